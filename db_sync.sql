@@ -29,7 +29,11 @@ CREATE TABLE `cdc_database_config`  (
   `username` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '用户名',
   `password` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '密码（加密存储）',
   `param` varchar(1024) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '额外连接参数',
+  `server_timezone` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '数据库时区，为空时为Asia/Shanghai',
   `status` tinyint(1) NOT NULL DEFAULT 1 COMMENT '状态：0-停用，1-启用',
+  `max_write_rows_per_sec` int(11) NOT NULL DEFAULT 0 COMMENT '作为目标库时每秒最大写入行数，0-不限制',
+  `max_write_bytes_per_sec` bigint(20) NOT NULL DEFAULT 0 COMMENT '作为目标库时每秒最大写入字节数，0-不限制',
+  `max_concurrent_writers` int(11) NOT NULL DEFAULT 0 COMMENT '作为目标库时最大并发写入数，0-不限制',
   `create_time` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP(0) COMMENT '创建时间',
   `update_time` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP(0) ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '更新时间',
   PRIMARY KEY (`id`) USING BTREE,
@@ -94,7 +98,7 @@ CREATE TABLE `cdc_table_statistics`  (
   `total_count` bigint(20) NULL DEFAULT -1 COMMENT '总数据量，-1表示未知或持续进行',
   `exception_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '异常记录数',
   `progress` double(255, 0) NULL DEFAULT NULL,
-  `remark` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL,
+  `remark` varchar(2048) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '额外统计信息JSON',
   `start_time` datetime(0) NOT NULL COMMENT '表同步开始时间',
   `last_update_time` datetime(0) NOT NULL COMMENT '最近更新时间',
   `create_time` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP(0) COMMENT '创建时间',
@@ -0,0 +1,40 @@
+/*
+ 已有管理库的升级脚本
+ 新安装直接执行db_sync.sql；已有安装在升级程序后执行本脚本，可重复执行（已存在的列不会重复添加）
+*/
+
+SET NAMES utf8mb4;
+
+-- ----------------------------
+-- cdc_table_statistics.remark 存放扩展统计信息JSON，长度由255扩大到2048
+-- ----------------------------
+ALTER TABLE `cdc_table_statistics`
+  MODIFY COLUMN `remark` varchar(2048) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '额外统计信息JSON';
+
+-- ----------------------------
+-- cdc_database_config 作为目标库时的写入限流
+-- ----------------------------
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'cdc_database_config' AND COLUMN_NAME = 'max_write_rows_per_sec') = 0,
+  'ALTER TABLE `cdc_database_config` ADD COLUMN `max_write_rows_per_sec` int(11) NOT NULL DEFAULT 0 COMMENT ''作为目标库时每秒最大写入行数，0-不限制'' AFTER `status`', 'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'cdc_database_config' AND COLUMN_NAME = 'max_write_bytes_per_sec') = 0,
+  'ALTER TABLE `cdc_database_config` ADD COLUMN `max_write_bytes_per_sec` bigint(20) NOT NULL DEFAULT 0 COMMENT ''作为目标库时每秒最大写入字节数，0-不限制'' AFTER `max_write_rows_per_sec`', 'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'cdc_database_config' AND COLUMN_NAME = 'max_concurrent_writers') = 0,
+  'ALTER TABLE `cdc_database_config` ADD COLUMN `max_concurrent_writers` int(11) NOT NULL DEFAULT 0 COMMENT ''作为目标库时最大并发写入数，0-不限制'' AFTER `max_write_bytes_per_sec`', 'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ----------------------------
+-- cdc_database_config 数据库时区
+-- ----------------------------
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'cdc_database_config' AND COLUMN_NAME = 'server_timezone') = 0,
+  'ALTER TABLE `cdc_database_config` ADD COLUMN `server_timezone` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT ''数据库时区，为空时为Asia/Shanghai'' AFTER `param`', 'SELECT 1');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
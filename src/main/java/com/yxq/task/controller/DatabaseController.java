@@ -11,6 +11,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 
@@ -69,7 +71,8 @@ public class DatabaseController {
             @ApiImplicitParam(name = "port", value = "端口", required = true, dataType = "String", example = "3306"),
             @ApiImplicitParam(name = "dbName", value = "数据库名称", required = false, dataType = "String", example = "mydatabase"),
             @ApiImplicitParam(name = "username", value = "用户名", required = true, dataType = "String", example = "root"),
-            @ApiImplicitParam(name = "password", value = "密码", required = true, dataType = "String", example = "123456")
+            @ApiImplicitParam(name = "password", value = "密码", required = true, dataType = "String", example = "123456"),
+            @ApiImplicitParam(name = "serverTimezone", value = "数据库时区，为空时为Asia/Shanghai", required = false, dataType = "String", example = "Asia/Shanghai")
     })
     public ResultVO<Boolean> addDatabase(@RequestBody Database database) {
         if (database.getHost() == null || database.getHost().isEmpty()) {
@@ -84,6 +87,9 @@ public class DatabaseController {
         if (database.getPassword() == null || database.getPassword().isEmpty()) {
             return ResultVO.error("密码不能为空");
         }
+        if (!isValidTimezone(database.getServerTimezone())) {
+            return ResultVO.error("数据库时区无效: " + database.getServerTimezone());
+        }
 
         boolean isConnected = databaseService.testConnection(database);
         if (!isConnected) {
@@ -114,12 +120,16 @@ public class DatabaseController {
             @ApiImplicitParam(name = "username", value = "用户名", dataType = "String", example = "root"),
             @ApiImplicitParam(name = "password", value = "密码", dataType = "String", example = "123456"),
             @ApiImplicitParam(name = "status", value = "状态", dataType = "Integer", example = "1"),
-            @ApiImplicitParam(name = "param", value = "参数", dataType = "String", example = "{\"key\":\"value\"}")
+            @ApiImplicitParam(name = "param", value = "参数", dataType = "String", example = "{\"key\":\"value\"}"),
+            @ApiImplicitParam(name = "serverTimezone", value = "数据库时区", dataType = "String", example = "Asia/Shanghai")
     })
     public ResultVO<Boolean> updateDatabase(@RequestBody Database database) {
         if (database.getId() == null) {
             return ResultVO.error("数据库ID不能为空");
         }
+        if (!isValidTimezone(database.getServerTimezone())) {
+            return ResultVO.error("数据库时区无效: " + database.getServerTimezone());
+        }
 
         Database existDatabase = databaseService.getDatabaseById(database.getId());
         if (existDatabase == null) {
@@ -278,4 +288,74 @@ public class DatabaseController {
         List<Map<String, String>> columns = databaseService.getTableColumns(databaseId, tableName);
         return ResultVO.success(columns);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 修改作为同步目标库时的写入限额（所有写入该库的任务共享，立即生效）
+     *
+     * @param id 数据库ID
+     * @param maxWriteRowsPerSec 每秒最大写入行数
+     * @param maxWriteBytesPerSec 每秒最大写入字节数
+     * @param maxConcurrentWriters 最大并发写入数
+     * @return 操作结果
+     */
+    @PostMapping("updateWriteLimit")
+    @ApiOperation("修改作为同步目标库时的写入限额")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "id", value = "数据库ID", required = true, dataType = "Integer", example = "1"),
+            @ApiImplicitParam(name = "maxWriteRowsPerSec", value = "每秒最大写入行数（0=不限制）", dataType = "Integer", example = "5000"),
+            @ApiImplicitParam(name = "maxWriteBytesPerSec", value = "每秒最大写入字节数（0=不限制）", dataType = "Long", example = "10485760"),
+            @ApiImplicitParam(name = "maxConcurrentWriters", value = "最大并发写入数（0=不限制）", dataType = "Integer", example = "4")
+    })
+    public ResultVO<Boolean> updateWriteLimit(@RequestParam("id") Integer id,
+                                              @RequestParam(value = "maxWriteRowsPerSec", required = false) Integer maxWriteRowsPerSec,
+                                              @RequestParam(value = "maxWriteBytesPerSec", required = false) Long maxWriteBytesPerSec,
+                                              @RequestParam(value = "maxConcurrentWriters", required = false) Integer maxConcurrentWriters) {
+        Database existDatabase = databaseService.getDatabaseById(id);
+        if (existDatabase == null) {
+            return ResultVO.error("数据库连接信息不存在");
+        }
+        if ((maxWriteRowsPerSec != null && maxWriteRowsPerSec < 0) || (maxWriteBytesPerSec != null && maxWriteBytesPerSec < 0)
+                || (maxConcurrentWriters != null && maxConcurrentWriters < 0)) {
+            return ResultVO.error("写入限额不能为负数");
+        }
+
+        boolean result = databaseService.updateWriteLimit(id, maxWriteRowsPerSec, maxWriteBytesPerSec, maxConcurrentWriters);
+        if (result) {
+            return ResultVO.success(true);
+        } else {
+            return ResultVO.error("修改写入限额失败");
+        }
+    }
+
+    /**
+     * 获取作为同步目标库时的写入限流状态
+     *
+     * @param id 数据库ID
+     * @return 限额、当前并发写入数和累计限流等待时间
+     */
+    @GetMapping("getWriteLimitStatus")
+    @ApiOperation("获取作为同步目标库时的写入限流状态")
+    @ApiImplicitParam(name = "id", value = "数据库ID", required = true, dataType = "Integer", example = "1")
+    public ResultVO<Map<String, Object>> getWriteLimitStatus(@RequestParam("id") Integer id) {
+        Map<String, Object> status = databaseService.getWriteLimitStatus(id);
+        if (status == null) {
+            return ResultVO.error("数据库连接信息不存在");
+        }
+        return ResultVO.success(status);
+    }
+
+    /**
+     * 校验时区ID，为空表示使用默认时区
+     */
+    private static boolean isValidTimezone(String timezone) {
+        if (timezone == null || timezone.trim().isEmpty()) {
+            return true;
+        }
+        try {
+            ZoneId.of(timezone.trim());
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+}
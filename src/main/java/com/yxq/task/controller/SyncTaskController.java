@@ -9,11 +9,16 @@ import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 同步任务控制器
@@ -251,4 +256,44 @@ public class SyncTaskController {
         
         return ResultVO.success(statistics);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 实时采样任务的CDC事件（SSE）
+     * 按需挂载到运行中的任务，推送事件名为event（事件JSON）和dropped（缓冲区溢出丢弃的事件总数），
+     * 连接断开或超时后自动卸载，未挂载时同步链路没有额外开销
+     *
+     * @param id 任务ID
+     * @param tables 源表名，多个用逗号分隔，为空时不过滤
+     * @param sampleRate 采样率
+     * @param capacity 缓冲区容量
+     * @param timeoutSeconds 采样时长（秒）
+     * @return SSE连接
+     */
+    @GetMapping(value = "tapEvents", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("实时采样任务的CDC事件（SSE）")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "id", value = "任务ID", required = true, dataType = "Integer", example = "1"),
+            @ApiImplicitParam(name = "tables", value = "源表名，多个用逗号分隔，为空时不过滤", required = false, dataType = "String", example = "user_table,order_table"),
+            @ApiImplicitParam(name = "sampleRate", value = "采样率(0, 1]", required = false, dataType = "Double", example = "0.1"),
+            @ApiImplicitParam(name = "capacity", value = "缓冲区容量(1-10000)", required = false, dataType = "Integer", example = "1000"),
+            @ApiImplicitParam(name = "timeoutSeconds", value = "采样时长（秒，1-3600）", required = false, dataType = "Long", example = "300")
+    })
+    public SseEmitter tapEvents(@RequestParam("id") Integer id,
+                                @RequestParam(value = "tables", required = false) String tables,
+                                @RequestParam(value = "sampleRate", defaultValue = "1") double sampleRate,
+                                @RequestParam(value = "capacity", defaultValue = "1000") int capacity,
+                                @RequestParam(value = "timeoutSeconds", defaultValue = "300") long timeoutSeconds) {
+        Set<String> tableSet = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(tables)) {
+            for (String table : tables.split(",")) {
+                if (StringUtils.isNotBlank(table)) {
+                    tableSet.add(table.trim());
+                }
+            }
+        }
+        double rate = sampleRate > 0 && sampleRate <= 1 ? sampleRate : 1;
+        int bufferCapacity = Math.max(1, Math.min(capacity, 10000));
+        long timeout = Math.max(1, Math.min(timeoutSeconds, 3600));
+        return syncTaskService.tapEvents(id, tableSet, rate, bufferCapacity, timeout);
+    }
+}
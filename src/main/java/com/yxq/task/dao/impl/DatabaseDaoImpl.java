@@ -25,7 +25,8 @@ public class DatabaseDaoImpl implements DatabaseDao {
 
     @Override
     public int insert(Database database) {
-        String sql = "INSERT INTO cdc_database_config (host, port, db_name, username, password, status, create_time, update_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO cdc_database_config (host, port, db_name, username, password, status, create_time, update_time, " +
+                "max_write_rows_per_sec, max_write_bytes_per_sec, max_concurrent_writers, server_timezone) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection connection = dataSource.getConnection();
              PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -37,6 +38,10 @@ public class DatabaseDaoImpl implements DatabaseDao {
             stmt.setInt(6, database.getStatus());
             stmt.setTimestamp(7, new Timestamp(System.currentTimeMillis()));
             stmt.setTimestamp(8, new Timestamp(System.currentTimeMillis()));
+            stmt.setInt(9, database.getMaxWriteRowsPerSec() != null ? database.getMaxWriteRowsPerSec() : 0);
+            stmt.setLong(10, database.getMaxWriteBytesPerSec() != null ? database.getMaxWriteBytesPerSec() : 0L);
+            stmt.setInt(11, database.getMaxConcurrentWriters() != null ? database.getMaxConcurrentWriters() : 0);
+            stmt.setString(12, database.getServerTimezone());
 
             int rows = stmt.executeUpdate();
 
@@ -89,6 +94,22 @@ public class DatabaseDaoImpl implements DatabaseDao {
             sql.append(", param = ?");
             params.add(database.getParam());
         }
+        if (database.getServerTimezone() != null) {
+            sql.append(", server_timezone = ?");
+            params.add(database.getServerTimezone());
+        }
+        if (database.getMaxWriteRowsPerSec() != null) {
+            sql.append(", max_write_rows_per_sec = ?");
+            params.add(database.getMaxWriteRowsPerSec());
+        }
+        if (database.getMaxWriteBytesPerSec() != null) {
+            sql.append(", max_write_bytes_per_sec = ?");
+            params.add(database.getMaxWriteBytesPerSec());
+        }
+        if (database.getMaxConcurrentWriters() != null) {
+            sql.append(", max_concurrent_writers = ?");
+            params.add(database.getMaxConcurrentWriters());
+        }
         sql.append(" WHERE id = ?");
         params.add(database.getId());
 
@@ -123,7 +144,8 @@ public class DatabaseDaoImpl implements DatabaseDao {
 
     @Override
     public Database selectById(Integer id) {
-        String sql = "SELECT id, host, port, db_name, username, password, param, status, create_time, update_time FROM cdc_database_config WHERE id = ?";
+        String sql = "SELECT id, host, port, db_name, username, password, param, status, create_time, update_time, " +
+                "max_write_rows_per_sec, max_write_bytes_per_sec, max_concurrent_writers, server_timezone FROM cdc_database_config WHERE id = ?";
 
         try (Connection connection = dataSource.getConnection();
              PreparedStatement stmt = connection.prepareStatement(sql)) {
@@ -143,7 +165,8 @@ public class DatabaseDaoImpl implements DatabaseDao {
 
     @Override
     public List<Database> selectAll() {
-        String sql = "SELECT id, host, port, db_name, username, password, param, status, create_time, update_time FROM cdc_database_config";
+        String sql = "SELECT id, host, port, db_name, username, password, param, status, create_time, update_time, " +
+                "max_write_rows_per_sec, max_write_bytes_per_sec, max_concurrent_writers, server_timezone FROM cdc_database_config";
         List<Database> databaseList = new ArrayList<>();
 
         try (Connection connection = dataSource.getConnection();
@@ -191,6 +214,10 @@ public class DatabaseDaoImpl implements DatabaseDao {
         database.setStatus(rs.getInt("status"));
         database.setCreateTime(rs.getTimestamp("create_time"));
         database.setUpdateTime(rs.getTimestamp("update_time"));
+        database.setMaxWriteRowsPerSec(rs.getInt("max_write_rows_per_sec"));
+        database.setMaxWriteBytesPerSec(rs.getLong("max_write_bytes_per_sec"));
+        database.setMaxConcurrentWriters(rs.getInt("max_concurrent_writers"));
+        database.setServerTimezone(rs.getString("server_timezone"));
         return database;
     }
 } 
\ No newline at end of file
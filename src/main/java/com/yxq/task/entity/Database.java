@@ -43,11 +43,31 @@ public class Database {
      * 额外连接参数
      */
     private String param;
+
+    /**
+     * 数据库时区（如Asia/Shanghai），作为同步源库时用于解析TIMESTAMP类型的值，为空时为Asia/Shanghai
+     */
+    private String serverTimezone;
     
     /**
      * 状态：0-停用，1-启用
      */
     private Integer status;
+
+    /**
+     * 每秒最大写入行数（作为同步目标库时，所有任务共享），0表示不限制
+     */
+    private Integer maxWriteRowsPerSec;
+
+    /**
+     * 每秒最大写入字节数（作为同步目标库时，所有任务共享），0表示不限制
+     */
+    private Long maxWriteBytesPerSec;
+
+    /**
+     * 最大并发写入数（作为同步目标库时，所有任务共享），0表示不限制
+     */
+    private Integer maxConcurrentWriters;
     
     /**
      * 创建时间
@@ -0,0 +1,98 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+
+/**
+ * 自适应攒批控制器（AIMD）
+ * 满批刷新耗时低于目标值时按固定步长加大批次，刷新超时、锁等待超时、死锁或超过max_allowed_packet时批次减半，
+ * 等待时间随批次同比例调整
+ */
+@Slf4j
+public class AdaptiveBatchController {
+
+    // MySQL错误码：锁等待超时、死锁、数据包过大
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_NET_PACKET_TOO_LARGE = 1153;
+
+    private final String tableName;
+    private final boolean enabled;
+    private final int baseBatchSize;
+    private final long baseLingerMs;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetFlushMs;
+    private final int step;
+
+    private volatile int batchSize;
+
+    public AdaptiveBatchController(String tableName, SinkOptions options) {
+        this.tableName = tableName;
+        this.enabled = options.isAdaptiveBatch();
+        this.baseBatchSize = Math.max(1, options.getBatchSize());
+        this.baseLingerMs = options.getLingerMs();
+        this.minBatchSize = Math.max(1, Math.min(options.getMinBatchSize(), baseBatchSize));
+        this.maxBatchSize = Math.max(options.getMaxBatchSize(), baseBatchSize);
+        this.targetFlushMs = options.getTargetFlushMs();
+        this.step = Math.max(1, baseBatchSize / 10);
+        this.batchSize = baseBatchSize;
+    }
+
+    /**
+     * 当前批次大小
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 当前等待时间，与批次大小同比例调整，不低于10ms
+     */
+    public long getLingerMs() {
+        if (!enabled) {
+            return baseLingerMs;
+        }
+        return Math.max(10, baseLingerMs * batchSize / baseBatchSize);
+    }
+
+    /**
+     * 根据一次刷新的结果调整批次大小
+     *
+     * @param rows 刷新的行数
+     * @param elapsedMillis 刷新耗时
+     * @param error 批量写入失败的异常，成功时为null
+     */
+    public void onFlush(int rows, long elapsedMillis, SQLException error) {
+        if (!enabled) {
+            return;
+        }
+        int previous = batchSize;
+        if ((error != null && isOverloadError(error)) || elapsedMillis > targetFlushMs) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (error == null && rows >= batchSize) {
+            // 只有满批刷新才说明需求超过当前批次，才继续加大
+            batchSize = Math.min(maxBatchSize, batchSize + step);
+        }
+        if (batchSize != previous) {
+            log.debug("表[{}]批次大小调整: {} -> {}, 刷新行数: {}, 耗时: {}ms",
+                    tableName, previous, batchSize, rows, elapsedMillis);
+        }
+    }
+
+    private static boolean isOverloadError(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                int code = ((SQLException) t).getErrorCode();
+                if (code == ER_LOCK_WAIT_TIMEOUT || code == ER_LOCK_DEADLOCK || code == ER_NET_PACKET_TOO_LARGE) {
+                    return true;
+                }
+            }
+            if (t.getMessage() != null && t.getMessage().contains("max_allowed_packet")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
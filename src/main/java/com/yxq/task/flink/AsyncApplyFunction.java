@@ -0,0 +1,192 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.async.ResultFuture;
+import org.apache.flink.streaming.api.functions.async.RichAsyncFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Flink异步I/O的写入阶段
+ * 事件按（表，主键）哈希到固定的写入线程，同一行的变更在同一线程中按顺序写入，
+ * 每个写入线程把队列中积压的事件合并为一个批次写入目标库，在途事件数和超时由AsyncDataStream控制；
+ * 表结构变更作为屏障，等所有写入线程写完之前的事件后再执行DDL
+ */
+@Slf4j
+public class AsyncApplyFunction extends RichAsyncFunction<ChangeRecord, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    // 复用Sink的事件转换、批量写入和统计逻辑
+    private final FlinkCDCSink writer;
+    private final SinkOptions sinkOptions;
+    private final RowKeySelector keySelector = new RowKeySelector();
+
+    private transient List<ApplyLane> lanes;
+
+    public AsyncApplyFunction(FlinkCDCSink writer, SinkOptions sinkOptions) {
+        this.writer = writer;
+        this.sinkOptions = sinkOptions;
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        super.open(parameters);
+        writer.setRuntimeContext(getRuntimeContext());
+        writer.open(parameters);
+
+        int subtaskIndex = getRuntimeContext().getIndexOfThisSubtask();
+        lanes = new ArrayList<>(sinkOptions.getAsyncLanes());
+        for (int i = 0; i < sinkOptions.getAsyncLanes(); i++) {
+            ApplyLane lane = new ApplyLane("FlinkCDCSink-Apply-" + subtaskIndex + "-" + i);
+            lane.start();
+            lanes.add(lane);
+        }
+        log.info("异步写入阶段已启动, 子任务: {}, 写入线程数: {}, 在途上限: {}, 超时: {}ms",
+                subtaskIndex, sinkOptions.getAsyncLanes(), sinkOptions.getAsyncCapacity(), sinkOptions.getAsyncTimeoutMs());
+    }
+
+    @Override
+    public void asyncInvoke(ChangeRecord input, ResultFuture<String> resultFuture) throws Exception {
+        if (input.isSchemaChange()) {
+            // 等待所有写入线程写完已提交的事件，再在当前线程执行DDL，执行期间不会提交新的事件
+            awaitLanes();
+            try {
+                writer.applyEvents(Collections.singletonList(input));
+                resultFuture.complete(Collections.emptyList());
+            } catch (Throwable t) {
+                resultFuture.completeExceptionally(t);
+            }
+            return;
+        }
+        String key = keySelector.getKey(input);
+        lanes.get(Math.floorMod(key.hashCode(), lanes.size())).submit(input, resultFuture);
+    }
+
+    /**
+     * 向每个写入线程提交屏障，等待屏障之前的事件全部写完
+     */
+    private void awaitLanes() throws InterruptedException {
+        CountDownLatch barrier = new CountDownLatch(lanes.size());
+        for (ApplyLane lane : lanes) {
+            lane.submitBarrier(barrier);
+        }
+        barrier.await();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (lanes != null) {
+            for (ApplyLane lane : lanes) {
+                lane.shutdown();
+            }
+            lanes = null;
+        }
+        writer.close();
+        super.close();
+    }
+
+    /**
+     * 待写入的事件，barrier不为null时为屏障（写完之前的事件后计数）
+     */
+    private static class PendingEvent {
+        private final ChangeRecord value;
+        private final ResultFuture<String> resultFuture;
+        private final CountDownLatch barrier;
+
+        PendingEvent(ChangeRecord value, ResultFuture<String> resultFuture, CountDownLatch barrier) {
+            this.value = value;
+            this.resultFuture = resultFuture;
+            this.barrier = barrier;
+        }
+    }
+
+    /**
+     * 单个写入线程：顺序消费队列，每次把积压的事件合并为一个批次写入
+     */
+    private class ApplyLane implements Runnable {
+        private final BlockingQueue<PendingEvent> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        ApplyLane(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void submit(ChangeRecord value, ResultFuture<String> resultFuture) {
+            queue.add(new PendingEvent(value, resultFuture, null));
+        }
+
+        void submitBarrier(CountDownLatch barrier) {
+            queue.add(new PendingEvent(null, null, barrier));
+        }
+
+        void shutdown() throws InterruptedException {
+            running = false;
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        @Override
+        public void run() {
+            List<PendingEvent> batch = new ArrayList<>();
+            while (running || !queue.isEmpty()) {
+                try {
+                    PendingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, sinkOptions.getAsyncBatchSize() - 1);
+                    // 屏障把批次分段：先写完屏障之前的事件，再通知屏障
+                    int from = 0;
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (batch.get(i).barrier != null) {
+                            apply(batch.subList(from, i));
+                            batch.get(i).barrier.countDown();
+                            from = i + 1;
+                        }
+                    }
+                    apply(batch.subList(from, batch.size()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void apply(List<PendingEvent> events) {
+            if (events.isEmpty()) {
+                return;
+            }
+            List<ChangeRecord> values = new ArrayList<>(events.size());
+            for (PendingEvent event : events) {
+                values.add(event.value);
+            }
+            try {
+                writer.applyEvents(values);
+                for (PendingEvent event : events) {
+                    event.resultFuture.complete(Collections.emptyList());
+                }
+            } catch (Throwable t) {
+                log.error("异步写入线程({})写入异常: {}", Thread.currentThread().getName(), t.getMessage(), t);
+                for (PendingEvent event : events) {
+                    event.resultFuture.completeExceptionally(t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * CDC变更记录，Source和Sink之间传递的数据类型
+ * 列值按Debezium转换后的Java类型保存（Integer、Long、BigDecimal、byte[]、LocalDateTime等），不再经过JSON编码和解析；
+ * 表以任务表列表中的序号表示，变更前后的数据共用同一个列名数组。记录创建后不再修改，序列化器据此跳过算子间的复制
+ */
+@Getter
+public class ChangeRecord {
+
+    // 操作类型：c:增 r:快照读 u:改 d:删 ddl:表结构变更
+    public static final String OP_SCHEMA_CHANGE = "ddl";
+
+    // 序列化时操作类型的编号
+    static final String[] OPS = {"c", "r", "u", "d", OP_SCHEMA_CHANGE};
+
+    // 未知表的序号
+    public static final int UNKNOWN_TABLE = -1;
+
+    private final String op;
+
+    // 表在任务表列表中的序号
+    private final int table;
+
+    // 事件时间
+    private final long ts;
+
+    // binlog位点：事件位置，以及事件所在事务的起始位置和GTID，没有位点时file为null
+    private final String file;
+    private final long pos;
+    private final int row;
+    private final String restartFile;
+    private final long restartPos;
+    private final String gtid;
+
+    // 主键（Debezium记录的key）
+    private final String[] keyColumns;
+    private final Object[] keyValues;
+
+    // 变更前后的数据，没有时为null
+    private final String[] columns;
+    private final Object[] before;
+    private final Object[] after;
+
+    // 表结构变更的DDL语句，其余记录为null
+    private final String ddl;
+
+    // 广播的表结构变更发往的Sink子任务序号，其余记录为-1（按表和主键分区）
+    private final int partition;
+
+    public ChangeRecord(String op, int table, long ts, String file, long pos, int row, String restartFile, long restartPos,
+                        String gtid, String[] keyColumns, Object[] keyValues, String[] columns, Object[] before, Object[] after) {
+        this(op, table, ts, file, pos, row, restartFile, restartPos, gtid, keyColumns, keyValues, columns, before, after, null);
+    }
+
+    public ChangeRecord(String op, int table, long ts, String file, long pos, int row, String restartFile, long restartPos,
+                        String gtid, String[] keyColumns, Object[] keyValues, String[] columns, Object[] before, Object[] after,
+                        String ddl) {
+        this(op, table, ts, file, pos, row, restartFile, restartPos, gtid, keyColumns, keyValues, columns, before, after, ddl, -1);
+    }
+
+    public ChangeRecord(String op, int table, long ts, String file, long pos, int row, String restartFile, long restartPos,
+                        String gtid, String[] keyColumns, Object[] keyValues, String[] columns, Object[] before, Object[] after,
+                        String ddl, int partition) {
+        this.op = op;
+        this.table = table;
+        this.ts = ts;
+        this.file = file;
+        this.pos = pos;
+        this.row = row;
+        this.restartFile = restartFile;
+        this.restartPos = restartPos;
+        this.gtid = gtid;
+        this.keyColumns = keyColumns;
+        this.keyValues = keyValues;
+        this.columns = columns;
+        this.before = before;
+        this.after = after;
+        this.ddl = ddl;
+        this.partition = partition;
+    }
+
+    /**
+     * 表结构变更记录
+     *
+     * @param table 表序号，未知表为UNKNOWN_TABLE
+     * @param ts 事件时间
+     * @param file DDL所在的binlog文件，没有时为null
+     * @param pos DDL所在的binlog位置
+     * @param ddl DDL语句
+     */
+    public static ChangeRecord schemaChange(int table, long ts, String file, long pos, String ddl) {
+        return new ChangeRecord(OP_SCHEMA_CHANGE, table, ts, file, pos, 0, null, 0, null,
+                null, null, null, null, null, ddl);
+    }
+
+    public boolean isSchemaChange() {
+        return OP_SCHEMA_CHANGE.equals(op);
+    }
+
+    /**
+     * 发往指定Sink子任务的副本，用于把表结构变更广播到所有子任务
+     *
+     * @param partition Sink子任务序号
+     */
+    public ChangeRecord withPartition(int partition) {
+        return new ChangeRecord(op, table, ts, file, pos, row, restartFile, restartPos, gtid,
+                keyColumns, keyValues, columns, before, after, ddl, partition);
+    }
+
+    /**
+     * 变更前数据（列名 -> 值），没有时返回null
+     */
+    public Map<String, Object> getBeforeImage() {
+        return toImage(columns, before);
+    }
+
+    /**
+     * 变更后数据（列名 -> 值），没有时返回null
+     */
+    public Map<String, Object> getAfterImage() {
+        return toImage(columns, after);
+    }
+
+    /**
+     * 主键（列名 -> 值），没有时返回空Map
+     */
+    public Map<String, Object> getKeyImage() {
+        Map<String, Object> image = toImage(keyColumns, keyValues);
+        return image != null ? image : Collections.emptyMap();
+    }
+
+    /**
+     * 主键值列表，可作为合并和分区的键（byte[]包装为ByteBuffer以按内容比较），没有主键时返回null
+     */
+    public List<Object> getKeyList() {
+        if (keyValues == null || keyValues.length == 0) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>(keyValues.length);
+        for (Object value : keyValues) {
+            key.add(value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value);
+        }
+        return key;
+    }
+
+    private static Map<String, Object> toImage(String[] names, Object[] values) {
+        if (names == null || values == null) {
+            return null;
+        }
+        Map<String, Object> image = new LinkedHashMap<>(names.length * 4 / 3 + 1);
+        for (int i = 0; i < names.length; i++) {
+            image.put(names[i], values[i]);
+        }
+        return image;
+    }
+
+    /**
+     * 估算记录大小（字节），用于统计源端吞吐
+     */
+    public long getBytes() {
+        return 32 + estimate(keyValues) + estimate(before) + estimate(after);
+    }
+
+    private static long estimate(Object[] values) {
+        if (values == null) {
+            return 0;
+        }
+        long size = 0;
+        for (Object value : values) {
+            if (value == null) {
+                size += 1;
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            } else if (value instanceof String) {
+                size += ((String) value).length();
+            } else {
+                size += 8;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * JSON形式，仅用于日志和异常记录
+     *
+     * @param tableName 表名，未知时为null
+     * @return JSON对象
+     */
+    public JSONObject toJson(String tableName) {
+        JSONObject json = new JSONObject(true);
+        json.put("tableName", tableName != null ? tableName : table);
+        json.put("op", op);
+        json.put("ts", ts);
+        if (file != null) {
+            json.put("file", file);
+            json.put("pos", pos);
+            json.put("row", row);
+            json.put("restartFile", restartFile);
+            json.put("restartPos", restartPos);
+            json.put("gtid", gtid);
+        }
+        if (keyColumns != null) {
+            json.put("key", getKeyImage());
+        }
+        if (before != null) {
+            json.put("before", getBeforeImage());
+        }
+        if (after != null) {
+            json.put("after", getAfterImage());
+        }
+        if (ddl != null) {
+            json.put("ddl", ddl);
+        }
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return toJson(null).toJSONString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChangeRecord)) {
+            return false;
+        }
+        ChangeRecord that = (ChangeRecord) o;
+        return table == that.table && ts == that.ts && pos == that.pos && row == that.row && restartPos == that.restartPos
+                && op.equals(that.op)
+                && Objects.equals(file, that.file)
+                && Objects.equals(restartFile, that.restartFile)
+                && Objects.equals(gtid, that.gtid)
+                && Arrays.equals(keyColumns, that.keyColumns) && Arrays.deepEquals(keyValues, that.keyValues)
+                && Arrays.equals(columns, that.columns)
+                && Arrays.deepEquals(before, that.before) && Arrays.deepEquals(after, that.after)
+                && Objects.equals(ddl, that.ddl) && partition == that.partition;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * op.hashCode() + table) + Arrays.deepHashCode(keyValues);
+    }
+}
@@ -0,0 +1,283 @@
+package com.yxq.task.flink;
+
+import org.apache.flink.api.common.typeutils.SimpleTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.StringValue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * ChangeRecord的Flink序列化器
+ * 列值按类型标记写为二进制（整数、浮点数按原始宽度，DECIMAL按scale + unscaled字节，日期时间按纪元日、秒和纳秒），不经过JSON；
+ * ChangeRecord创建后不再修改，算子间传递时不需要复制
+ */
+public class ChangeRecordSerializer extends TypeSerializerSingleton<ChangeRecord> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final ChangeRecordSerializer INSTANCE = new ChangeRecordSerializer();
+
+    // 列值类型标记
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte STRING = 8;
+    private static final byte BYTES = 9;
+    private static final byte DECIMAL = 10;
+    private static final byte LOCAL_DATE = 11;
+    private static final byte LOCAL_DATE_TIME = 12;
+
+    @Override
+    public boolean isImmutableType() {
+        return true;
+    }
+
+    @Override
+    public ChangeRecord createInstance() {
+        return null;
+    }
+
+    @Override
+    public ChangeRecord copy(ChangeRecord from) {
+        return from;
+    }
+
+    @Override
+    public ChangeRecord copy(ChangeRecord from, ChangeRecord reuse) {
+        return from;
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(ChangeRecord record, DataOutputView out) throws IOException {
+        out.writeByte(opCode(record.getOp()));
+        out.writeInt(record.getTable());
+        out.writeLong(record.getTs());
+        StringValue.writeString(record.getFile(), out);
+        out.writeLong(record.getPos());
+        out.writeInt(record.getRow());
+        StringValue.writeString(record.getRestartFile(), out);
+        out.writeLong(record.getRestartPos());
+        StringValue.writeString(record.getGtid(), out);
+        writeNames(record.getKeyColumns(), out);
+        writeValues(record.getKeyValues(), out);
+        writeNames(record.getColumns(), out);
+        writeValues(record.getBefore(), out);
+        writeValues(record.getAfter(), out);
+        StringValue.writeString(record.getDdl(), out);
+        out.writeInt(record.getPartition());
+    }
+
+    @Override
+    public ChangeRecord deserialize(DataInputView in) throws IOException {
+        String op = ChangeRecord.OPS[in.readByte()];
+        int table = in.readInt();
+        long ts = in.readLong();
+        String file = StringValue.readString(in);
+        long pos = in.readLong();
+        int row = in.readInt();
+        String restartFile = StringValue.readString(in);
+        long restartPos = in.readLong();
+        String gtid = StringValue.readString(in);
+        String[] keyColumns = readNames(in);
+        Object[] keyValues = readValues(in);
+        String[] columns = readNames(in);
+        Object[] before = readValues(in);
+        Object[] after = readValues(in);
+        String ddl = StringValue.readString(in);
+        int partition = in.readInt();
+        return new ChangeRecord(op, table, ts, file, pos, row, restartFile, restartPos, gtid,
+                keyColumns, keyValues, columns, before, after, ddl, partition);
+    }
+
+    @Override
+    public ChangeRecord deserialize(ChangeRecord reuse, DataInputView in) throws IOException {
+        return deserialize(in);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    @Override
+    public TypeSerializerSnapshot<ChangeRecord> snapshotConfiguration() {
+        return new ChangeRecordSerializerSnapshot();
+    }
+
+    private static byte opCode(String op) {
+        for (byte i = 0; i < ChangeRecord.OPS.length; i++) {
+            if (ChangeRecord.OPS[i].equals(op)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("未知的操作类型: " + op);
+    }
+
+    private static void writeNames(String[] names, DataOutputView out) throws IOException {
+        if (names == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(names.length);
+        for (String name : names) {
+            StringValue.writeString(name, out);
+        }
+    }
+
+    private static String[] readNames(DataInputView in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        String[] names = new String[length];
+        for (int i = 0; i < length; i++) {
+            names[i] = StringValue.readString(in);
+        }
+        return names;
+    }
+
+    private static void writeValues(Object[] values, DataOutputView out) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (Object value : values) {
+            writeValue(value, out);
+        }
+    }
+
+    private static Object[] readValues(DataInputView in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readValue(in);
+        }
+        return values;
+    }
+
+    private static void writeValue(Object value, DataOutputView out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) value, out);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(DECIMAL);
+            out.writeInt(decimal.scale());
+            writeBytes(decimal.unscaledValue().toByteArray(), out);
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(dateTime.getNano());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        } else {
+            // 其余类型（含TIME文本）按字符串写出
+            out.writeByte(STRING);
+            StringValue.writeString(value.toString(), out);
+        }
+    }
+
+    private static Object readValue(DataInputView in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return StringValue.readString(in);
+            case BYTES:
+                return readBytes(in);
+            case DECIMAL:
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.readLong());
+            case LOCAL_DATE_TIME:
+                long epochSecond = in.readLong();
+                return LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+            default:
+                throw new IOException("未知的列值类型标记: " + type);
+        }
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputView out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputView in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * 序列化器快照，序列化格式没有参数，恢复时直接使用单例
+     */
+    public static final class ChangeRecordSerializerSnapshot extends SimpleTypeSerializerSnapshot<ChangeRecord> {
+
+        public ChangeRecordSerializerSnapshot() {
+            super(() -> INSTANCE);
+        }
+    }
+}
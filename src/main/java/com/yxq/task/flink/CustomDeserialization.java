@@ -1,44 +1,79 @@
 package com.yxq.task.flink;
 
-import com.alibaba.fastjson.JSONObject;
 import com.ververica.cdc.debezium.DebeziumDeserializationSchema;
+import com.yxq.task.util.DatabaseUtil;
+import io.debezium.relational.TableId;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.util.Collector;
-import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.source.SourceRecord;
 
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 自定义的CDC反序列化实现
- * 用于将Debezium的CDC事件转换为JSON字符串
+ * 用于将Debezium的CDC事件转换为ChangeRecord，列值保留Java类型
  */
 @Slf4j
-public class CustomDeserialization implements DebeziumDeserializationSchema<String> {
+public class CustomDeserialization implements DebeziumDeserializationSchema<ChangeRecord> {
+
+    // 任务ID，用于记录源端统计，可为null
+    private final Integer taskId;
+
+    // 行转换器缓存的最大数量
+    private static final int MAX_CACHED_CONVERTERS = 1024;
+
+    // 源表名 -> 表序号
+    private final Map<String, Integer> tableOrdinals = new HashMap<>();
+
+    // 配置了列裁剪或行过滤的表：源表名 -> 表同步配置
+    private final Map<String, TableSyncConfig> tableConfigs;
+
+    // 源库时区，用于转换TIMESTAMP类型的列
+    private final ZoneId serverZone;
+
+    // 行转换器缓存，按Schema对象（同一版本的表结构共用同一个Schema对象）区分，表结构变化后自动生成新的转换器
+    private transient Map<Schema, StructConverter> converterCache;
 
     /**
-     * 反序列化方法，将Debezium的SourceRecord转换为JSON字符串
+     * @param taskId 任务ID
+     * @param sourceTables 任务的源表列表，ChangeRecord中的表序号即为该列表的下标
+     * @param tableConfigs 配置了列裁剪或行过滤的表，Debezium已按column.include.list裁剪，这里再次过滤保证不需要的列不进入下游
+     * @param serverTimezone 源库时区，为空时使用默认时区
+     */
+    public CustomDeserialization(Integer taskId, List<String> sourceTables, Map<String, TableSyncConfig> tableConfigs,
+                                 String serverTimezone) {
+        this.taskId = taskId;
+        for (int i = 0; i < sourceTables.size(); i++) {
+            tableOrdinals.put(sourceTables.get(i), i);
+        }
+        this.tableConfigs = tableConfigs != null ? tableConfigs : Collections.emptyMap();
+        this.serverZone = ZoneId.of(serverTimezone != null ? serverTimezone : DatabaseUtil.DEFAULT_SERVER_TIMEZONE);
+    }
+
+    /**
+     * 反序列化方法，将Debezium的SourceRecord转换为ChangeRecord
      *
      * @param sourceRecord Debezium的SourceRecord
      * @param collector 输出收集器
      */
     @Override
-    public void deserialize(SourceRecord sourceRecord, Collector<String> collector) throws Exception {
+    public void deserialize(SourceRecord sourceRecord, Collector<ChangeRecord> collector) throws Exception {
         try {
-            String topic = sourceRecord.topic();
-            log.info("处理CDC事件，主题: {}", topic);
-            
-            // 获取源数据字段
+            // 获取源数据字段（逐条事件不再打印日志，调试时通过事件采样接口查看）
             Struct value = (Struct) sourceRecord.value();
             
-            // 打印完整原始记录信息用于调试
-            log.info("CDC原始记录: key={}, value={}", sourceRecord.key(), value);
-            
             // 检查值是否为空
             if (value == null) {
                 log.warn("收到空CDC值，跳过处理");
@@ -48,7 +83,6 @@ public class CustomDeserialization implements DebeziumDeserializationSchema<Stri
             // 处理特殊消息类型
             if (value.schema() != null && value.schema().name() != null && 
                 value.schema().name().equals("io.debezium.connector.mysql.SchemaChangeValue")) {
-                log.info("收到Schema变更事件: {}", value);
                 // 处理Schema变更事件
                 processSchemaChange(value, collector);
                 return;
@@ -56,55 +90,94 @@ public class CustomDeserialization implements DebeziumDeserializationSchema<Stri
             
             // 获取操作类型
             String op = value.getString("op"); // c:增 d:删 u:改 r:查询
-            
-            // 特别处理删除操作
-            if ("d".equals(op)) {
-                log.info("【重要】收到删除操作: {}", value);
+            if (!"c".equals(op) && !"r".equals(op) && !"u".equals(op) && !"d".equals(op)) {
+                log.warn("未处理的操作类型: {}", op);
+                return;
+            }
+
+            // 表同步配置（列裁剪、行过滤）
+            Struct source = value.getStruct("source");
+            TableSyncConfig tableConfig = source != null ? tableConfigs.get(source.getString("table")) : null;
+
+            // 快照阶段已读取的行数，与启动时的估算行数一起计算快照进度（行过滤前计数）
+            if ("r".equals(op) && taskId != null && source != null) {
+                SinkMetrics.get(taskId).add(source.getString("table"), "snapshotReadRows", 1);
+            }
+
+            // 行过滤：在转换列值之前直接对Struct求值，不满足条件的行丢弃
+            if (tableConfig != null && tableConfig.hasRowFilter()) {
+                op = applyRowFilter(tableConfig.getRowFilter(), op, value);
+                if (op == null) {
+                    if (taskId != null) {
+                        SinkMetrics.get(taskId).add(source.getString("table"), "filteredEvents", 1);
+                    }
+                    return;
+                }
             }
-            
-            // 输出操作类型用于调试
-            log.info("CDC操作类型: {}", op);
-            
-            // 解析操作前后的数据
-            JSONObject data = new JSONObject();
             
             // 解析source信息
-            Struct source = value.getStruct("source");
+            String table = null;
+            long ts = 0;
+            String file = null;
+            long pos = 0;
+            int row = 0;
+            String restartFile = null;
+            long restartPos = 0;
+            String gtid = null;
             if (source != null) {
                 // 提取源信息
-                String db = source.getString("db");
-                String table = source.getString("table");
-                Long ts = source.getInt64("ts_ms");
-                
-                data.put("db", db);
-                data.put("tableName", table);
-                data.put("ts", ts);
-                data.put("op", op);
-                
-                log.info("CDC事件源信息: db={}, table={}, ts={}, op={}", db, table, ts, op);
+                table = source.getString("table");
+                Long sourceTs = source.getInt64("ts_ms");
+                ts = sourceTs != null ? sourceTs : 0;
+
+                // binlog位点：事件位置用于Sink恢复时跳过已写入的事件，事务起始位置用于重启CDC源
+                if (source.schema().field("file") != null) {
+                    file = source.getString("file");
+                    Long sourcePos = source.getInt64("pos");
+                    Integer sourceRow = source.getInt32("row");
+                    pos = sourcePos != null ? sourcePos : 0;
+                    row = sourceRow != null ? sourceRow : 0;
+                }
+                Map<String, ?> sourceOffset = sourceRecord.sourceOffset();
+                if (sourceOffset != null && sourceOffset.get("file") != null) {
+                    restartFile = sourceOffset.get("file").toString();
+                    restartPos = sourceOffset.get("pos") != null ? Long.parseLong(sourceOffset.get("pos").toString()) : 0;
+                    gtid = sourceOffset.get("gtids") != null ? sourceOffset.get("gtids").toString() : null;
+                }
             } else {
                 log.warn("CDC事件缺少source信息");
             }
-            
+
+            // 解析主键（Debezium记录的key），用于按行分区和合并
+            String[] keyColumns = null;
+            Object[] keyValues = null;
+            if (sourceRecord.key() instanceof Struct) {
+                Struct key = (Struct) sourceRecord.key();
+                StructConverter keyConverter = getConverter(key.schema(), null);
+                keyColumns = keyConverter.getColumns();
+                keyValues = keyConverter.convert(key);
+            }
+
+            // 变更前后的数据（行过滤把更新转换为插入时不再需要before，转换为删除时不再需要after），两者的列相同
+            Struct before = "c".equals(op) ? null : value.getStruct("before");
+            Struct after = "d".equals(op) ? null : value.getStruct("after");
+            Struct image = after != null ? after : before;
+            StructConverter converter = image != null ? getConverter(image.schema(), tableConfig) : null;
+            String[] columns = converter != null ? converter.getColumns() : null;
+
             // 解析变更前数据
-            Struct before = value.getStruct("before");
-            JSONObject beforeJson = new JSONObject();
+            Object[] beforeValues = null;
             if (before != null) {
-                beforeJson = convertStruct(before);
-                data.put("before", beforeJson);
-                log.info("变更前数据: {}", beforeJson);
+                beforeValues = converter.convert(before);
             } else if ("d".equals(op)) {
                 // 对于删除操作，如果before为空，这是个严重问题
                 log.error("【严重错误】删除操作但没有before数据: {}", value);
             }
             
             // 解析变更后数据
-            Struct after = value.getStruct("after");
-            JSONObject afterJson = new JSONObject();
+            Object[] afterValues = null;
             if (after != null) {
-                afterJson = convertStruct(after);
-                data.put("after", afterJson);
-                log.info("变更后数据: {}", afterJson);
+                afterValues = converter.convert(after);
             }
             
             // 发现缺少字段则记录日志
@@ -117,9 +190,18 @@ public class CustomDeserialization implements DebeziumDeserializationSchema<Stri
             }
             
             // 收集数据
-            String jsonStr = data.toJSONString();
-            log.info("CDC反序列化结果: {}", jsonStr);
-            collector.collect(jsonStr);
+            ChangeRecord record = new ChangeRecord(op, getTableOrdinal(table), ts, file, pos, row, restartFile, restartPos,
+                    gtid, keyColumns, keyValues, columns, beforeValues, afterValues);
+            log.debug("CDC反序列化结果: {}", record);
+            collector.collect(record);
+            EventTap.publish(taskId, table, record);
+
+            // 按表记录源端事件数和字节数，用于对比列裁剪前后的吞吐
+            if (taskId != null && table != null) {
+                SinkMetrics metrics = SinkMetrics.get(taskId);
+                metrics.add(table, "sourceEvents", 1);
+                metrics.add(table, "sourceBytes", record.getBytes());
+            }
         } catch (Exception e) {
             log.error("CDC反序列化异常: {}", e.getMessage(), e);
             // 记录异常堆栈信息
@@ -128,86 +210,119 @@ public class CustomDeserialization implements DebeziumDeserializationSchema<Stri
         }
     }
 
+    /**
+     * 按行过滤条件确定事件的实际操作类型
+     * 更新前后都满足条件时保持更新；只有更新后满足时转换为插入，只有更新前满足时转换为删除，使目标表只保留满足条件的行
+     *
+     * @return 实际操作类型，丢弃事件时返回null
+     */
+    private String applyRowFilter(RowFilter rowFilter, String op, Struct value) {
+        switch (op) {
+            case "c":
+            case "r":
+                return rowFilter.test(value.getStruct("after"), serverZone) ? op : null;
+            case "d":
+                return rowFilter.test(value.getStruct("before"), serverZone) ? op : null;
+            case "u":
+                boolean beforeMatched = rowFilter.test(value.getStruct("before"), serverZone);
+                boolean afterMatched = rowFilter.test(value.getStruct("after"), serverZone);
+                if (afterMatched) {
+                    return beforeMatched ? "u" : "c";
+                }
+                return beforeMatched ? "d" : null;
+            default:
+                return op;
+        }
+    }
+
     /**
      * 处理Schema变更事件
+     * SchemaChangeValue包含databaseName、ddl和tableChanges（每个变更表的id为"库"."表"），
+     * 每个受影响的任务表输出一条带DDL的变更记录；无法确定表时输出一条未知表的记录，Sink对所有表刷新缓存
      */
-    private void processSchemaChange(Struct value, Collector<String> collector) {
+    private void processSchemaChange(Struct value, Collector<ChangeRecord> collector) {
         try {
-            JSONObject schemaChange = new JSONObject();
-            schemaChange.put("type", "schema_change");
-            schemaChange.put("ts", System.currentTimeMillis());
-            
-            // 尝试从Schema变更事件中提取数据库和表信息
-            if (value.schema().field("database") != null) {
-                schemaChange.put("db", value.getString("database"));
+            String ddl = value.schema().field("ddl") != null ? value.getString("ddl") : null;
+            long ts = System.currentTimeMillis();
+            String file = null;
+            long pos = 0;
+            Struct source = value.schema().field("source") != null ? value.getStruct("source") : null;
+            if (source != null) {
+                Long sourceTs = source.getInt64("ts_ms");
+                ts = sourceTs != null && sourceTs > 0 ? sourceTs : ts;
+                if (source.schema().field("file") != null) {
+                    file = source.getString("file");
+                    Long sourcePos = source.getInt64("pos");
+                    pos = sourcePos != null ? sourcePos : 0;
+                }
             }
-            if (value.schema().field("table") != null) {
-                schemaChange.put("tableName", value.getString("table"));
+
+            Set<String> tables = new LinkedHashSet<>();
+            if (value.schema().field("tableChanges") != null && value.getArray("tableChanges") != null) {
+                for (Object change : value.getArray("tableChanges")) {
+                    if (change instanceof Struct && ((Struct) change).schema().field("id") != null) {
+                        TableId tableId = TableId.parse(((Struct) change).getString("id"));
+                        if (tableId != null) {
+                            tables.add(tableId.table());
+                        }
+                    }
+                }
             }
-            
-            // 收集Schema变更事件
-            collector.collect(schemaChange.toJSONString());
+            // ALTER以外的语句（如TRUNCATE）可能没有tableChanges，使用source中的表名
+            if (tables.isEmpty() && source != null && StringUtils.isNotEmpty(source.getString("table"))) {
+                for (String table : source.getString("table").split(",")) {
+                    tables.add(table.trim());
+                }
+            }
+
+            if (tables.isEmpty()) {
+                collector.collect(ChangeRecord.schemaChange(ChangeRecord.UNKNOWN_TABLE, ts, file, pos, ddl));
+            }
+            for (String table : tables) {
+                int ordinal = getTableOrdinal(table);
+                if (ordinal != ChangeRecord.UNKNOWN_TABLE) {
+                    collector.collect(ChangeRecord.schemaChange(ordinal, ts, file, pos, ddl));
+                }
+            }
+            log.info("收到表结构变更: 表: {}, DDL: {}", tables, ddl);
         } catch (Exception e) {
             log.error("处理Schema变更事件异常: {}", e.getMessage(), e);
         }
     }
-    
+
     /**
-     * 将Struct转换为JSONObject
+     * 表序号，不在任务表列表中时返回UNKNOWN_TABLE
      */
-    private JSONObject convertStruct(Struct struct) {
-        JSONObject json = new JSONObject();
-        if (struct == null) {
-            return json;
+    private int getTableOrdinal(String table) {
+        Integer ordinal = table != null ? tableOrdinals.get(table) : null;
+        return ordinal != null ? ordinal : ChangeRecord.UNKNOWN_TABLE;
+    }
+
+    /**
+     * 获取Schema对应的行转换器，首次遇到时生成
+     *
+     * @param schema 行数据的Schema
+     * @param columnFilter 表同步配置，为null时不裁剪
+     */
+    private StructConverter getConverter(Schema schema, TableSyncConfig columnFilter) {
+        if (converterCache == null) {
+            converterCache = new IdentityHashMap<>();
         }
-        
-        try {
-            Schema schema = struct.schema();
-            List<Field> fields = schema.fields();
-            
-            for (Field field : fields) {
-                String fieldName = field.name();
-                Object value = struct.get(fieldName);
-                
-                // 处理复杂类型字段
-                if (value instanceof Struct) {
-                    json.put(fieldName, convertStruct((Struct) value));
-                } 
-                // 处理Map类型字段
-                else if (value instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> map = (Map<String, Object>) value;
-                    JSONObject mapJson = new JSONObject();
-                    for (Map.Entry<String, Object> entry : map.entrySet()) {
-                        mapJson.put(entry.getKey(), entry.getValue());
-                    }
-                    json.put(fieldName, mapJson);
-                } 
-                // 处理List类型字段
-                else if (value instanceof List) {
-                    json.put(fieldName, value); // 简单处理，直接放入
-                } 
-                // 处理时间戳类型字段，直接用UTC，不再加Asia/Shanghai，避免多加8小时
-                else if (value instanceof Long && (fieldName.endsWith("_time") || fieldName.endsWith("_date") || fieldName.equals("create_time") || fieldName.equals("update_time"))) {
-                    long timestamp = (Long) value;
-                    java.time.LocalDateTime localDateTime = java.time.LocalDateTime.ofEpochSecond(timestamp / 1000, 0, java.time.ZoneOffset.UTC);
-                    java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                    json.put(fieldName, localDateTime.format(formatter));
-                }
-                // 处理基本类型
-                else {
-                    json.put(fieldName, value);
-                }
+        StructConverter converter = converterCache.get(schema);
+        if (converter == null) {
+            // 旧版本表结构的转换器不再使用，数量过多时清空重建
+            if (converterCache.size() >= MAX_CACHED_CONVERTERS) {
+                converterCache.clear();
             }
-        } catch (Exception e) {
-            log.error("转换Struct到JSON异常: {}", e.getMessage(), e);
+            converter = new StructConverter(schema, columnFilter, serverZone);
+            converterCache.put(schema, converter);
+            log.info("生成行转换器: schema={}, 列: {}", schema.name(), Arrays.toString(converter.getColumns()));
         }
-        
-        return json;
+        return converter;
     }
 
     @Override
-    public TypeInformation<String> getProducedType() {
-        return BasicTypeInfo.STRING_TYPE_INFO;
+    public TypeInformation<ChangeRecord> getProducedType() {
+        return ChangeRecordTypeInfo.INSTANCE;
     }
 }
@@ -0,0 +1,120 @@
+package com.yxq.task.flink;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把源表的DDL改写为目标表的DDL
+ * 只处理作用于单个表的语句（ALTER TABLE、CREATE/DROP INDEX、TRUNCATE、DROP TABLE），表名替换为目标库和目标表，
+ * 其余部分保持原文；多表语句、RENAME TABLE、CREATE TABLE等无法按表映射改写的语句不处理
+ */
+public final class DdlRewriter {
+
+    // 标识符：反引号括起的名称或普通名称
+    private static final String IDENT = "(?:`(?:[^`]|``)+`|[A-Za-z0-9_$]+)";
+
+    // 表名，可带库名
+    private static final String NAME = "(" + IDENT + "(?:\\s*\\.\\s*" + IDENT + ")?)";
+
+    private static final Pattern IDENT_PATTERN = Pattern.compile(IDENT);
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(?:\\s+|/\\*.*?\\*/|(?:--|#)[^\\n]*(?:\\n|$))+", Pattern.DOTALL);
+
+    // 语句末尾的注释，如DROP TABLE的"/* generated by server */"
+    private static final Pattern TRAILING_COMMENTS = Pattern.compile("(?:\\s*/\\*.*?\\*/)+\\s*$", Pattern.DOTALL);
+
+    private static final Pattern ALTER_TABLE = Pattern.compile("^(ALTER\\s+(?:ONLINE\\s+|IGNORE\\s+)*TABLE)\\s+" + NAME + "(.*)$", FLAGS);
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^(CREATE\\s+(?:UNIQUE\\s+|FULLTEXT\\s+|SPATIAL\\s+)?INDEX\\s+" + IDENT + "(?:\\s+USING\\s+\\w+)?\\s+ON)\\s+" + NAME + "(.*)$", FLAGS);
+
+    private static final Pattern DROP_INDEX = Pattern.compile("^(DROP\\s+INDEX\\s+" + IDENT + "\\s+ON)\\s+" + NAME + "(.*)$", FLAGS);
+
+    private static final Pattern TRUNCATE_TABLE = Pattern.compile("^(TRUNCATE(?:\\s+TABLE)?)\\s+" + NAME + "(\\s*)$", FLAGS);
+
+    private static final Pattern DROP_TABLE = Pattern.compile(
+            "^(DROP\\s+TABLE(?:\\s+IF\\s+EXISTS)?)\\s+" + NAME + "(\\s*(?:RESTRICT|CASCADE)?\\s*)$", FLAGS);
+
+    // SAFE策略下ALTER TABLE不允许的子句
+    private static final Pattern UNSAFE_ALTER = Pattern.compile(
+            "\\b(?:DROP|RENAME|TRUNCATE|DISCARD|IMPORT|REMOVE|EXCHANGE|REORGANIZE|COALESCE)\\b", Pattern.CASE_INSENSITIVE);
+
+    // 修改表名的子句（RENAME [TO|AS] 新表名），改名后表映射失效，任何策略下都不执行
+    private static final Pattern RENAME_TABLE = Pattern.compile("\\bRENAME\\s+(?!(?:COLUMN|INDEX|KEY)\\b)", Pattern.CASE_INSENSITIVE);
+
+    private DdlRewriter() {
+    }
+
+    /**
+     * 改写DDL
+     *
+     * @param ddl 源库执行的DDL
+     * @param sourceTable 源表名，DDL中的表名必须与之相同
+     * @param targetDb 目标库名
+     * @param targetTable 目标表名
+     * @param policy 同步策略
+     * @return 目标表的DDL，策略不允许或无法改写时返回null
+     */
+    public static String rewrite(String ddl, String sourceTable, String targetDb, String targetTable, SchemaChangePolicy policy) {
+        if (ddl == null || policy == null || policy == SchemaChangePolicy.IGNORE) {
+            return null;
+        }
+        String statement = LEADING_COMMENTS.matcher(ddl).replaceFirst("");
+        statement = TRAILING_COMMENTS.matcher(statement).replaceFirst("").trim();
+        while (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1).trim();
+        }
+        boolean all = policy == SchemaChangePolicy.ALL;
+
+        Matcher matcher = ALTER_TABLE.matcher(statement);
+        if (matcher.matches()) {
+            String body = matcher.group(3);
+            if (RENAME_TABLE.matcher(body).find() || (!all && UNSAFE_ALTER.matcher(body).find())) {
+                return null;
+            }
+            return replaceTable(matcher, sourceTable, targetDb, targetTable);
+        }
+        matcher = CREATE_INDEX.matcher(statement);
+        if (matcher.matches()) {
+            return replaceTable(matcher, sourceTable, targetDb, targetTable);
+        }
+        if (!all) {
+            return null;
+        }
+        for (Pattern pattern : new Pattern[]{DROP_INDEX, TRUNCATE_TABLE, DROP_TABLE}) {
+            matcher = pattern.matcher(statement);
+            if (matcher.matches()) {
+                return replaceTable(matcher, sourceTable, targetDb, targetTable);
+            }
+        }
+        return null;
+    }
+
+    private static String replaceTable(Matcher matcher, String sourceTable, String targetDb, String targetTable) {
+        if (!sourceTable.equalsIgnoreCase(lastIdentifier(matcher.group(2)))) {
+            return null;
+        }
+        return matcher.group(1) + " " + quote(targetDb) + "." + quote(targetTable) + matcher.group(3);
+    }
+
+    /**
+     * 取限定名中的表名部分并去掉反引号
+     */
+    private static String lastIdentifier(String name) {
+        Matcher matcher = IDENT_PATTERN.matcher(name);
+        String last = null;
+        while (matcher.find()) {
+            last = matcher.group();
+        }
+        if (last != null && last.startsWith("`")) {
+            last = last.substring(1, last.length() - 1).replace("``", "`");
+        }
+        return last;
+    }
+
+    private static String quote(String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+}
@@ -0,0 +1,184 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务CDC事件采样
+ * 调试时按需挂载到运行中的任务，按表和采样率把事件放入每个订阅的有界环形缓冲区（满时覆盖最旧的事件），
+ * 由SSE接口取出推送；没有订阅时发布只读取一个计数器，逐条事件不再写日志
+ */
+@Slf4j
+public class EventTap {
+
+    // 任务ID -> 订阅
+    private static final ConcurrentHashMap<Integer, CopyOnWriteArrayList<Subscription>> SUBSCRIPTIONS = new ConcurrentHashMap<>();
+
+    // 所有任务的订阅总数，为0时发布直接返回
+    private static final AtomicInteger ACTIVE = new AtomicInteger(0);
+
+    private EventTap() {
+    }
+
+    /**
+     * 发布一条事件（反序列化线程调用）
+     *
+     * @param taskId 任务ID
+     * @param table 源表名
+     * @param record 事件
+     */
+    public static void publish(Integer taskId, String table, ChangeRecord record) {
+        if (ACTIVE.get() == 0 || taskId == null) {
+            return;
+        }
+        List<Subscription> subscriptions = SUBSCRIPTIONS.get(taskId);
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(table, record);
+        }
+    }
+
+    /**
+     * 订阅任务的事件
+     *
+     * @param taskId 任务ID
+     * @param tables 源表名，为空时不过滤
+     * @param sampleRate 采样率(0, 1]
+     * @param capacity 缓冲区容量
+     * @return 订阅
+     */
+    public static synchronized Subscription subscribe(Integer taskId, Set<String> tables, double sampleRate, int capacity) {
+        Subscription subscription = new Subscription(taskId, tables, sampleRate, capacity);
+        SUBSCRIPTIONS.computeIfAbsent(taskId, k -> new CopyOnWriteArrayList<>()).add(subscription);
+        ACTIVE.incrementAndGet();
+        log.info("任务[{}]事件采样已挂载, 表: {}, 采样率: {}, 缓冲区: {}", taskId,
+                tables != null && !tables.isEmpty() ? tables : "全部", sampleRate, capacity);
+        return subscription;
+    }
+
+    /**
+     * 取消订阅，重复调用无影响
+     *
+     * @param subscription 订阅
+     */
+    public static synchronized void unsubscribe(Subscription subscription) {
+        List<Subscription> subscriptions = SUBSCRIPTIONS.get(subscription.getTaskId());
+        if (subscriptions != null && subscriptions.remove(subscription)) {
+            ACTIVE.decrementAndGet();
+            SUBSCRIPTIONS.computeIfPresent(subscription.getTaskId(), (k, v) -> v.isEmpty() ? null : v);
+            log.info("任务[{}]事件采样已卸载, 采样事件: {}, 丢弃事件: {}",
+                    subscription.getTaskId(), subscription.getSampled(), subscription.getDropped());
+        }
+    }
+
+    /**
+     * 一个采样订阅，缓冲区容量固定，消费跟不上时覆盖最旧的事件并计入丢弃数
+     */
+    public static final class Subscription {
+
+        private final Integer taskId;
+        private final Set<String> tables;
+        private final double sampleRate;
+
+        // 环形缓冲区
+        private final String[] ringTables;
+        private final ChangeRecord[] ringRecords;
+        private final long[] ringTimes;
+        private int head;
+        private int size;
+
+        // 采样到的事件数，以及因缓冲区已满被覆盖的事件数
+        private long sampled;
+        private long dropped;
+
+        Subscription(Integer taskId, Set<String> tables, double sampleRate, int capacity) {
+            this.taskId = taskId;
+            this.tables = tables != null && !tables.isEmpty() ? tables : null;
+            this.sampleRate = sampleRate;
+            this.ringTables = new String[capacity];
+            this.ringRecords = new ChangeRecord[capacity];
+            this.ringTimes = new long[capacity];
+        }
+
+        void offer(String table, ChangeRecord record) {
+            if (tables != null && !tables.contains(table)) {
+                return;
+            }
+            if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                int capacity = ringRecords.length;
+                int index = (head + size) % capacity;
+                if (size == capacity) {
+                    head = (head + 1) % capacity;
+                    dropped++;
+                } else {
+                    size++;
+                }
+                ringTables[index] = table;
+                ringRecords[index] = record;
+                ringTimes[index] = now;
+                sampled++;
+            }
+        }
+
+        /**
+         * 取出缓冲区中的全部事件（JSON形式，在调用线程中转换）
+         */
+        public List<JSONObject> drain() {
+            String[] drainedTables;
+            ChangeRecord[] drainedRecords;
+            long[] drainedTimes;
+            synchronized (this) {
+                if (size == 0) {
+                    return Collections.emptyList();
+                }
+                drainedTables = new String[size];
+                drainedRecords = new ChangeRecord[size];
+                drainedTimes = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int index = (head + i) % ringRecords.length;
+                    drainedTables[i] = ringTables[index];
+                    drainedRecords[i] = ringRecords[index];
+                    drainedTimes[i] = ringTimes[index];
+                    ringTables[index] = null;
+                    ringRecords[index] = null;
+                }
+                head = 0;
+                size = 0;
+            }
+            List<JSONObject> events = new ArrayList<>(drainedRecords.length);
+            for (int i = 0; i < drainedRecords.length; i++) {
+                JSONObject event = drainedRecords[i].toJson(drainedTables[i]);
+                event.put("tapTime", drainedTimes[i]);
+                events.add(event);
+            }
+            return events;
+        }
+
+        public Integer getTaskId() {
+            return taskId;
+        }
+
+        public synchronized long getSampled() {
+            return sampled;
+        }
+
+        public synchronized long getDropped() {
+            return dropped;
+        }
+    }
+}
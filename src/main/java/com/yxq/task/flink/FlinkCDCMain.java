@@ -3,10 +3,13 @@ package com.yxq.task.flink;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.TypeReference;
 import com.ververica.cdc.connectors.mysql.source.MySqlSource;
+import com.ververica.cdc.connectors.mysql.source.offset.BinlogOffset;
+import com.ververica.cdc.connectors.mysql.source.offset.BinlogOffsetBuilder;
 import com.ververica.cdc.connectors.mysql.table.StartupOptions;
 import com.yxq.task.entity.Database;
 import com.yxq.task.entity.SyncTask;
 import com.yxq.task.util.AESUtil;
+import com.yxq.task.util.DatabaseUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.api.common.JobID;
@@ -14,13 +17,17 @@ import org.apache.flink.api.common.eventtime.WatermarkStrategy;
 import org.apache.flink.api.common.restartstrategy.RestartStrategies;
 import org.apache.flink.core.execution.JobClient;
 import org.apache.flink.streaming.api.CheckpointingMode;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSink;
 import org.apache.flink.streaming.api.datastream.DataStreamSource;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.DiscardingSink;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Flink CDC 主程序类
@@ -143,6 +150,11 @@ public class FlinkCDCMain {
             // 构建表映射关系
             Map<String, String> tableMappings = new HashMap<>();
             List<String> includeTables = new ArrayList<>();
+            // 源表列表，CDC事件中以下标表示表
+            List<String> sourceTables = new ArrayList<>();
+            List<TableSyncConfig> tableSyncConfigs = new ArrayList<>();
+            // 配置了列裁剪或行过滤的表：源表名 -> 表同步配置
+            Map<String, TableSyncConfig> tableFilters = new HashMap<>();
 
             for (Map<String, String> config : tableConfigs) {
                 String sourceTable = config.get("sourceTable");
@@ -150,12 +162,23 @@ public class FlinkCDCMain {
 
                 if (sourceTable != null && targetTable != null) {
                     log.info("表映射: {} => {}", sourceTable, targetTable);
-                    tableMappings.put(sourceTable, targetTable);
+                    if (tableMappings.put(sourceTable, targetTable) == null) {
+                        sourceTables.add(sourceTable);
+                    }
 
                     // 添加到CDC监控表列表，格式为 dbName.tableName
                     String fullTableName = sourceDb.getDbName() + "." + sourceTable;
                     includeTables.add(fullTableName);
                     log.info("监控表添加: {}", fullTableName);
+
+                    TableSyncConfig tableSyncConfig = TableSyncConfig.fromMap(config);
+                    tableSyncConfigs.add(tableSyncConfig);
+                    if (tableSyncConfig.hasColumnFilter() || tableSyncConfig.hasRowFilter()) {
+                        log.info("表[{}]列裁剪: include={}, exclude={}, 行过滤: {}", sourceTable,
+                                tableSyncConfig.getIncludeColumns(), tableSyncConfig.getExcludeColumns(),
+                                tableSyncConfig.getRowFilter());
+                        tableFilters.put(sourceTable, tableSyncConfig);
+                    }
                 }
             }
 
@@ -168,6 +191,33 @@ public class FlinkCDCMain {
 
             // 构建MySqlSource
             StartupOptions startupOptions = getStartupOptions(syncTask);
+            SinkOptions sinkOptions = SinkOptions.fromStartupOptions(syncTask.getStartupOptions());
+            SourceOptions sourceOptions = SourceOptions.fromStartupOptions(syncTask.getStartupOptions());
+
+            // 事务模式下如果目标库已有提交位点，则从位点恢复，不再从头读取
+            StartupOptions sourceStartupOptions = StartupOptions.earliest();
+            BinlogOffset sourceStartOffset = null;
+            if (sinkOptions.isTransactional()) {
+                SinkOffset offset = loadSinkOffset(syncTask, targetDb, sinkOptions);
+                if (offset != null) {
+                    log.info("任务[{}]从Sink已提交位点恢复: {}", syncTask.getId(), offset);
+                    // 有GTID时同时按GTID集合定位，主从切换后仍能从正确的位置恢复
+                    BinlogOffsetBuilder offsetBuilder = BinlogOffset.builder()
+                            .setBinlogFilePosition(offset.getRestartFile(), offset.getRestartPos());
+                    if (StringUtils.isNotEmpty(offset.getGtid())) {
+                        offsetBuilder.setGtidSet(offset.getGtid());
+                    }
+                    sourceStartOffset = offsetBuilder.build();
+                    sourceStartupOptions = StartupOptions.specificOffset(sourceStartOffset);
+                }
+            }
+            // 需要快照且没有恢复位点时，先增量快照再读取binlog
+            boolean snapshot = sourceOptions.isSnapshot() && sourceStartOffset == null;
+            if (snapshot) {
+                sourceStartupOptions = StartupOptions.initial();
+                log.info("任务[{}]启用增量快照, 并行度: {}, 分块行数: {}, fetchSize: {}", syncTask.getId(),
+                        sourceOptions.getSnapshotParallelism(), sourceOptions.getSplitSize(), sourceOptions.getFetchSize());
+            }
 
             // 显式输出调试信息
             log.info("使用StartupOptions: {}", startupOptions);
@@ -177,52 +227,95 @@ public class FlinkCDCMain {
             // 补全关键兼容性参数
             log.info("JDBC连接参数: {}", jdbcProperties);
 
-            // 配置binlog消费参数
-            Properties debeziumProperties = getDebeziumProperties();
-            log.info("Debezium配置参数: {}", debeziumProperties);
-
-            // 构建MySQLSource
-            MySqlSource<String> mySqlSource = MySqlSource.<String>builder()
-                    .jdbcProperties(jdbcProperties)
-                    .hostname(sourceDb.getHost())
-                    .port(sourceDb.getPort())
-                    .username(sourceDb.getUsername())
-                    .password(password)
-                    .serverTimeZone("Asia/Shanghai")
-                    .databaseList(sourceDb.getDbName())
-                    .tableList(includeTables.toArray(new String[0]))
-                    //initial:  模式会先做全量快照，直接 select 全表数据 不通过binlog，会导致时间格式数据处理错误，当前版本不支持，因此不用initial
-                    //Specific Offset：适合任务失败后需要从中断点恢复的场景。
-                    //Latest Offset：适合实时数据处理，关注最新变更的场景。
-                    //Earliest Offset：适合需要捕获所有历史变更数据的场景。
-                    //Timestamp：适合需要基于特定时间点进行数据快照的场景
-                    .startupOptions(StartupOptions.earliest())
-                    .deserializer(new CustomDeserialization()) // 使用自定义反序列化
-                    .debeziumProperties(debeziumProperties) // 使用简化的Debezium配置
-                    .build();
-
-            log.info("MySqlSource构建完成. 监控表: {}", String.join(",", includeTables));
-            log.info("数据源配置: {}", JSON.toJSONString(mySqlSource));
-
-            // 创建数据流
-            DataStreamSource<String> dataStream = env.fromSource(
-                    mySqlSource,
-                    WatermarkStrategy.noWatermarks(),
-                    "MySQL CDC Source - Task " + syncTask.getId()
-            );
+            CustomDeserialization deserialization = new CustomDeserialization(syncTask.getId(), sourceTables, tableFilters,
+                    DatabaseUtil.getServerTimezone(sourceDb));
+            DataStreamSource<ChangeRecord> dataStream;
+            if (sourceOptions.isShared() && sourceDb.getId() != null) {
+                // 共享binlog读取：同一源库的任务共用一个binlog连接，本任务只订阅自己的表
+                SharedBinlogReader.subscribe(syncTask.getId(), sourceDb, sourceTables, deserialization,
+                        sourceStartOffset, sourceOptions.getSharedQueueSize());
+                dataStream = env.addSource(new SharedBinlogSource(syncTask.getId()),
+                        "Shared MySQL CDC Source - Task " + syncTask.getId());
+                log.info("任务[{}]使用源库[{}]的共享binlog读取, 监控表: {}", syncTask.getId(), sourceDb.getId(), includeTables);
+            } else {
+                // 配置binlog消费参数
+                Properties debeziumProperties = getDebeziumProperties(sourceDb.getDbName(), tableSyncConfigs);
+                log.info("Debezium配置参数: {}", debeziumProperties);
+
+                // 构建MySQLSource
+                MySqlSource<ChangeRecord> mySqlSource = MySqlSource.<ChangeRecord>builder()
+                        .jdbcProperties(jdbcProperties)
+                        .hostname(sourceDb.getHost())
+                        .port(sourceDb.getPort())
+                        .username(sourceDb.getUsername())
+                        .password(password)
+                        .serverTimeZone(DatabaseUtil.getServerTimezone(sourceDb))
+                        .databaseList(sourceDb.getDbName())
+                        .tableList(includeTables.toArray(new String[0]))
+                        //initial:  模式会先做全量快照，直接 select 全表数据 不通过binlog，会导致时间格式数据处理错误，当前版本不支持，因此不用initial
+                        //Specific Offset：适合任务失败后需要从中断点恢复的场景。
+                        //Latest Offset：适合实时数据处理，关注最新变更的场景。
+                        //Earliest Offset：适合需要捕获所有历史变更数据的场景。
+                        //Timestamp：适合需要基于特定时间点进行数据快照的场景
+                        .startupOptions(sourceStartupOptions)
+                        .deserializer(deserialization) // 使用自定义反序列化
+                        // 每个读取器使用区间中的一个server id，快照分块按splitSize切分，并行读取
+                        .serverId(ServerIdAllocator.allocate("task-" + syncTask.getId(),
+                                sourceOptions.getSourceParallelism(), sourceOptions.getServerId()))
+                        .splitSize(sourceOptions.getSplitSize())
+                        .fetchSize(sourceOptions.getFetchSize())
+                        .splitMetaGroupSize(sourceOptions.getSplitMetaGroupSize())
+                        .debeziumProperties(debeziumProperties) // 使用简化的Debezium配置
+                        .includeSchemaChanges(true) // 输出表结构变更事件，由Sink按策略同步DDL
+                        .build();
+
+                log.info("MySqlSource构建完成. 监控表: {}", String.join(",", includeTables));
+                log.info("数据源配置: {}", JSON.toJSONString(mySqlSource));
+
+                // 创建数据流
+                dataStream = env.fromSource(
+                        mySqlSource,
+                        WatermarkStrategy.noWatermarks(),
+                        "MySQL CDC Source - Task " + syncTask.getId()
+                ).setParallelism(sourceOptions.getSourceParallelism());
+            }
 
             log.info("数据流创建成功，准备添加Sink处理");
             log.info("数据源流：{}", JSON.toJSONString(dataStream.getExecutionConfig()));
 
             // 添加数据处理Sink
+            SinkMetrics.reset(syncTask.getId());
+            if (snapshot) {
+                recordSnapshotEstimates(syncTask.getId(), sourceDb, sourceTables, sourceOptions.getSplitSize());
+            }
             FlinkCDCSink cdcSink = new FlinkCDCSink(
                     syncTask.getId(),
                     targetDb.getDbName(), targetDb.getHost() + ":" + targetDb.getPort(),
-                    tableMappingJson
+                    tableMappingJson,
+                    sourceTables,
+                    sinkOptions
             );
 
-            DataStreamSink<String> dataStreamSink = dataStream.addSink(cdcSink);
-            log.info("Sink处理添加成功，准备异步执行Flink作业");
+            // 按（表，主键）分区并行写入，同一行的变更始终由同一个子任务按顺序处理；表结构变更发往每个子任务
+            DataStream<ChangeRecord> sinkInput = sinkOptions.getParallelism() > 1
+                    ? RowPartitioner.partition(dataStream, sinkOptions.getParallelism())
+                    : dataStream;
+            DataStreamSink<?> dataStreamSink;
+            if (sinkOptions.isAsyncApply()) {
+                // 异步写入：写入线程按主键保证顺序，在途事件数和超时由异步I/O算子控制
+                dataStreamSink = AsyncDataStream.unorderedWait(
+                                sinkInput,
+                                new AsyncApplyFunction(cdcSink, sinkOptions),
+                                sinkOptions.getAsyncTimeoutMs(), TimeUnit.MILLISECONDS,
+                                sinkOptions.getAsyncCapacity())
+                        .setParallelism(sinkOptions.getParallelism())
+                        .addSink(new DiscardingSink<>())
+                        .setParallelism(sinkOptions.getParallelism());
+            } else {
+                dataStreamSink = sinkInput.addSink(cdcSink)
+                        .setParallelism(sinkOptions.getParallelism());
+            }
+            log.info("Sink处理添加成功，并行度: {}，准备异步执行Flink作业", sinkOptions.getParallelism());
 
             // 异步执行Flink作业
             new Thread(new Runnable() {
@@ -248,6 +341,8 @@ public class FlinkCDCMain {
                         RUNNING_JOBS.put(syncTask.getId(), new RunningJobInfo(env, jobId));
                     } catch (Exception e) {
                         log.error("Flink作业执行异常，任务ID: {}", syncTask.getId(), e);
+                        SharedBinlogReader.unsubscribe(syncTask.getId());
+                        ServerIdAllocator.release("task-" + syncTask.getId());
                     }
                 }
             }).start();
@@ -256,6 +351,8 @@ public class FlinkCDCMain {
             return true;
         } catch (Exception e) {
             log.error("启动同步任务[{}]异常: {}", syncTask.getTaskName(), e.getMessage(), e);
+            SharedBinlogReader.unsubscribe(syncTask.getId());
+            ServerIdAllocator.release("task-" + syncTask.getId());
             return false;
         }
     }
@@ -269,6 +366,7 @@ public class FlinkCDCMain {
     public static boolean stopSyncTask(Integer taskId) {
         try {
             log.info("准备停止任务，ID: {}", taskId);
+            SharedBinlogReader.unsubscribe(taskId);
             RunningJobInfo jobInfo = RUNNING_JOBS.get(taskId);
             if (jobInfo == null) {
                 log.warn("任务[{}]未在运行中", taskId);
@@ -282,6 +380,8 @@ public class FlinkCDCMain {
                 log.warn("关闭本地Flink环境异常，任务ID: {}, 错误: {}", taskId, e.getMessage());
             }
             RUNNING_JOBS.remove(taskId);
+            ServerIdAllocator.release("task-" + taskId);
+            SinkMetrics.reset(taskId);
             log.info("已停止任务[{}]，当前运行任务数：{}", taskId, RUNNING_JOBS.size());
             return true;
         } catch (Exception e) {
@@ -354,6 +454,38 @@ public class FlinkCDCMain {
         return options;
     }
 
+    /**
+     * 读取目标库中任务的Sink已提交位点
+     *
+     * @return 所有子任务中最早的位点，不存在时返回null
+     */
+    private static SinkOffset loadSinkOffset(SyncTask syncTask, Database targetDb, SinkOptions sinkOptions) {
+        try {
+            String param = StringUtils.isNotEmpty(targetDb.getParam()) ? targetDb.getParam() : "useUnicode=true&characterEncoding=UTF-8&allowMultiQueries=true&useSSL=false";
+            String url = String.format("jdbc:mysql://%s:%d/%s?" + param, targetDb.getHost(), targetDb.getPort(), targetDb.getDbName());
+            return SinkOffsetStore.loadEarliest(url, targetDb.getUsername(), AESUtil.decrypt(targetDb.getPassword()),
+                    syncTask.getId(), sinkOptions.getParallelism());
+        } catch (Exception e) {
+            log.error("读取任务[{}]的Sink位点异常: {}", syncTask.getId(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 记录快照阶段各表的估算行数和分块数，与快照已读取的行数(snapshotReadRows)一起计算快照进度
+     */
+    private static void recordSnapshotEstimates(Integer taskId, Database sourceDb, List<String> sourceTables, int splitSize) {
+        Map<String, Long> estimatedRows = DatabaseUtil.getEstimatedTableRows(sourceDb);
+        SinkMetrics metrics = SinkMetrics.get(taskId);
+        for (String table : sourceTables) {
+            long rows = estimatedRows.getOrDefault(table, 0L);
+            metrics.set(table, "snapshotEstimatedRows", rows);
+            metrics.set(table, "snapshotChunks", Math.max(1, (rows + splitSize - 1) / splitSize));
+            metrics.set(table, "snapshotSplitSize", splitSize);
+        }
+        log.info("任务[{}]快照表估算行数: {}", taskId, estimatedRows);
+    }
+
     /**
      * 检查任务是否在运行
      *
@@ -378,15 +510,17 @@ public class FlinkCDCMain {
     /**
      * 获取Debezium配置
      *
+     * @param dbName 源库名
+     * @param tableSyncConfigs 表同步配置
      * @return Debezium配置属性
      */
-    private static Properties getDebeziumProperties() {
+    static Properties getDebeziumProperties(String dbName, List<TableSyncConfig> tableSyncConfigs) {
         Properties props = new Properties();
 
         // ===== 核心配置 - 使用最小配置集确保兼容性 =====
 
-        // 基本服务器标识
-        props.setProperty("database.server.id", String.valueOf(new Random().nextInt(9000) + 1000));
+        // 基本服务器标识（server id由MySqlSource按读取并行度从ServerIdAllocator分配的区间设置，
+        // 这里设置database.server.id会覆盖每个读取器的server id，使并行读取器冲突）
         props.setProperty("database.server.name", "mysql-cdc-source");
 
         // 连接设置
@@ -426,12 +560,29 @@ public class FlinkCDCMain {
         // 在原有配置基础上增加：
         props.setProperty("debezium.sanitize.field.names", "true");
         props.setProperty("debezium.skip.messages.without.change", "true");
-        props.setProperty("debezium.binary.handling.mode", "hex"); // 调试二进制数据
         props.setProperty("column.propagate.source.type", ".*");  // 强制传递原始类型
+
+        // 二进制和DECIMAL按原值传递：BINARY/VARBINARY/BLOB为byte[]，DECIMAL为BigDecimal，
+        // 下游按参数绑定写入，不经过十六进制或字符串转换。
+        // 注意这里的配置直接传给Debezium，带debezium.前缀的配置项（Flink SQL的写法）不会生效
+        props.setProperty("binary.handling.mode", "bytes");
+        props.setProperty("decimal.handling.mode", "precise");
         // 使用 initial 模式重新初始化（确保干净状态）
         props.setProperty("snapshot.mode", "initial");
         // 增加快照锁超时配置
         props.setProperty("snapshot.locking.timeout.ms", "10000");
+
+        // 列裁剪：任一表配置了列裁剪时生成column.include.list，未配置的表匹配全部列，
+        // 不需要的列在快照查询和binlog解析时即被丢弃，不再进入反序列化和下游
+        boolean hasColumnFilter = false;
+        List<String> columnRegexes = new ArrayList<>();
+        for (TableSyncConfig tableSyncConfig : tableSyncConfigs) {
+            hasColumnFilter |= tableSyncConfig.hasColumnFilter();
+            columnRegexes.add(tableSyncConfig.toColumnRegex(dbName));
+        }
+        if (hasColumnFilter) {
+            props.setProperty("column.include.list", String.join(",", columnRegexes));
+        }
         return props;
     }
 
@@ -439,7 +590,7 @@ public class FlinkCDCMain {
      * 创建优化的JDBC属性
      * @return JDBC连接属性
      */
-    private static Properties createJdbcProperties(Database sourceDb) {
+    static Properties createJdbcProperties(Database sourceDb) {
         Properties props = new Properties();
         props.setProperty("useSSL", "false");
         props.setProperty("characterEncoding", "UTF-8");
@@ -453,7 +604,7 @@ public class FlinkCDCMain {
         props.setProperty("autoReconnect", "true");
         props.setProperty("maxReconnects", "5");
         props.setProperty("tcpKeepAlive", "true");
-        props.setProperty("serverTimezone", "Asia/Shanghai");
+        props.setProperty("serverTimezone", DatabaseUtil.getServerTimezone(sourceDb));
 
         // 关键配置：启用binlog功能
         props.setProperty("enabledTLSProtocols", "TLSv1,TLSv1.1,TLSv1.2");
@@ -1,7 +1,8 @@
 package com.yxq.task.flink;
 
-import com.alibaba.fastjson.JSONArray;
+import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.fastjson.JSONObject;
+import com.mysql.cj.jdbc.JdbcConnection;
 import com.yxq.task.dao.DatabaseDao;
 import com.yxq.task.dao.SyncExceptionDao;
 import com.yxq.task.dao.SyncStatisticsDao;
@@ -9,37 +10,65 @@ import com.yxq.task.entity.Database;
 import com.yxq.task.entity.SyncException;
 import com.yxq.task.entity.SyncStatistics;
 import com.yxq.task.util.AESUtil;
+import com.yxq.task.util.DatabaseUtil;
 import com.yxq.task.util.DbUtil;
 import com.yxq.task.util.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.flink.api.common.state.CheckpointListener;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
 import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Flink CDC数据同步Sink
+ * 支持逐条写入和攒批写入两种模式，攒批模式下按行数、字节数、等待时间以及checkpoint触发刷新
  */
 @Slf4j
-public class FlinkCDCSink extends RichSinkFunction<String> {
+public class FlinkCDCSink extends RichSinkFunction<ChangeRecord> implements CheckpointedFunction, CheckpointListener {
 
     private final Integer taskId;
     private final String targetDb;
     private final String targetHostPort;
     private final String tableMapping;
+
+    // 解析后的表映射关系：源表 -> 目标表
+    private transient volatile Map<String, String> targetTables;
+    // 源表列表，ChangeRecord中的表序号为该列表的下标
+    private final List<String> sourceTables;
+    private final SinkOptions sinkOptions;
     private SyncExceptionDao syncExceptionDao;
     private DatabaseDao databaseDao;
     private SyncStatisticsDao syncStatisticsDao;
@@ -52,21 +81,81 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
     private String targetDbUsername;
     private String targetDbPassword;
 
-    // 使用ConcurrentHashMap存储每个表的计数器
-    private final ConcurrentHashMap<String, AtomicInteger> tableInsertCount = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicInteger> tableUpdateCount = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicInteger> tableDeleteCount = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AtomicInteger> tableErrorCount = new ConcurrentHashMap<>();
+    // 目标数据库连接池，open()中创建，close()中释放
+    private transient DruidDataSource targetDataSource;
+
+    // 参数化SQL模板缓存
+    private transient SqlTemplateCache templateCache;
+
+    // 目标表元数据（主键、唯一键、列类型、列顺序）缓存
+    private transient TableMetadataCache metadataCache;
+
+    // 快照阶段批量导入，未启用时为null
+    private transient SnapshotBulkLoader bulkLoader;
+
+    // 目标库写入限流器（同一目标库的所有任务共享）
+    private transient WriteGovernor writeGovernor;
+
+    // 快照阶段的目标库会话设置
+    private transient SnapshotSessionProfile snapshotProfile;
+
+    // 多行合并语句的最大字节数（受目标库max_allowed_packet限制）
+    private transient long maxStatementBytes;
+
+    // 攒批缓冲区（按目标表），以及保护缓冲区的锁
+    private transient Map<String, TableBuffer> buffers;
+    private transient Object bufferLock;
+
+    // 已从缓冲区取出、等待写入目标库的批次（在bufferLock内按顺序加入），以及保证批次按顺序逐个写入的锁；
+    // 写入（包括限流等待）在bufferLock之外进行，不阻塞其他线程写入缓冲区
+    private transient Deque<Runnable> pendingWrites;
+    private transient Object writeLock;
+
+    // 按等待时间刷新缓冲区的调度器
+    private transient ScheduledExecutorService flushScheduler;
+
+    // 任务级统计，同一任务的所有并行子任务共享
+    private transient SinkMetrics metrics;
 
-    // 总体计数器
-    private final AtomicInteger insertCount = new AtomicInteger(0);
-    private final AtomicInteger updateCount = new AtomicInteger(0);
-    private final AtomicInteger deleteCount = new AtomicInteger(0);
-    private final AtomicInteger errorCount = new AtomicInteger(0);
+    // 当前子任务序号，只有0号子任务负责持久化统计数据
+    private transient int subtaskIndex;
+    // Sink子任务数
+    private transient int subtaskCount;
+
+    // 事务模式：已提交到目标库的位点（恢复时跳过不大于该位点的事件），以及缓冲区中最新事件的位点
+    private transient SinkOffset committedOffset;
+    private transient SinkOffset pendingOffset;
+
+    // 事务模式：最近收到事件的位点，以及是否仍在跳过恢复前已提交的事件
+    private transient SinkOffset lastSeenOffset;
+    private transient boolean replaying;
+
+    // 事务模式下提交失败的异常（可能发生在定时刷新线程中），由处理线程抛出使作业失败重启
+    private transient volatile Exception asyncFlushException;
+
+    // 目标库连接追加的预编译语句参数：服务端预编译 + 驱动端语句缓存
+    // 单行语句模板的长度随列数增长，缓存上限按宽表的单行模板设置；多行合并语句使用客户端预编译，不进入缓存
+    private static final Map<String, String> PREPARED_STATEMENT_URL_PARAMS = new LinkedHashMap<>();
+
+    static {
+        PREPARED_STATEMENT_URL_PARAMS.put("useServerPrepStmts", "true");
+        PREPARED_STATEMENT_URL_PARAMS.put("cachePrepStmts", "true");
+        PREPARED_STATEMENT_URL_PARAMS.put("prepStmtCacheSize", "250");
+        PREPARED_STATEMENT_URL_PARAMS.put("prepStmtCacheSqlLimit", "65536");
+    }
+
+    // MySQL单个预编译语句的最大占位符个数
+    private static final int MAX_PREPARED_STATEMENT_PARAMS = 65535;
+
+    // 未标记逻辑类型的纪元时间按默认时区转换
+    private static final ZoneId DEFAULT_ZONE = ZoneId.of(DatabaseUtil.DEFAULT_SERVER_TIMEZONE);
 
     // 静态实例映射，用于获取运行中的sink实例
     private static final ConcurrentHashMap<Integer, FlinkCDCSink> INSTANCES = new ConcurrentHashMap<>();
 
+    // 事务模式：各任务每次checkpoint时所有子任务已收到的最大位点，checkpoint完成后用于推进空闲子任务的位点
+    private static final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Long, SinkOffset>> CHECKPOINT_OFFSETS = new ConcurrentHashMap<>();
+
     // 新增：关闭标志
     private volatile boolean closed = false;
 
@@ -76,24 +165,35 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @param taskId 任务ID
      * @param targetDb 目标数据库
      * @param tableMapping 表映射关系（JSON格式）
+     * @param sourceTables 源表列表
+     * @param sinkOptions 写入配置
      */
-    public FlinkCDCSink(Integer taskId, String targetDb, String targetHostPort, String tableMapping) {
+    public FlinkCDCSink(Integer taskId, String targetDb, String targetHostPort, String tableMapping, List<String> sourceTables,
+                        SinkOptions sinkOptions) {
         this.taskId = taskId;
         this.targetDb = targetDb;
         this.targetHostPort = targetHostPort;
         this.tableMapping = tableMapping;
+        this.sourceTables = new ArrayList<>(sourceTables);
+        this.sinkOptions = sinkOptions != null ? sinkOptions : new SinkOptions();
 
         // 记录实例
         INSTANCES.put(taskId, this);
 
         // 输出构造参数日志
-        log.info("FlinkCDCSink创建 - 任务ID: {}, 目标DB: {}, 表映射: {}", taskId, targetDb, tableMapping);
+        log.info("FlinkCDCSink创建 - 任务ID: {}, 目标DB: {}, 表映射: {}, 写入配置: {}", taskId, targetDb, tableMapping, this.sinkOptions);
     }
 
     // 初始化方法
     @Override
     public void open(Configuration parameters) throws Exception {
         super.open(parameters);
+        templateCache = new SqlTemplateCache(targetDb);
+        snapshotProfile = new SnapshotSessionProfile(sinkOptions.getSnapshotSession());
+        maxStatementBytes = sinkOptions.getMaxStatementBytes();
+        metrics = SinkMetrics.get(taskId);
+        subtaskIndex = getRuntimeContext().getIndexOfThisSubtask();
+        subtaskCount = getRuntimeContext().getNumberOfParallelSubtasks();
         log.info("启动Flink CDC Sink，任务ID：{}，目标数据库：{}, 表映射：{}", taskId, targetDb, tableMapping);
 
         // 打印所有实例信息
@@ -122,8 +222,14 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
                             // 构建JDBC URL
                             String param = StringUtils.isNotEmpty(db.getParam()) ? db.getParam() : "useUnicode=true&characterEncoding=UTF-8&allowMultiQueries=true&useSSL=false";
                             targetDbUrl = String.format("jdbc:mysql://%s:%d/%s?" + param, db.getHost(), db.getPort(), db.getDbName());
+                            targetDbUrl = DbUtil.withUrlParams(targetDbUrl, PREPARED_STATEMENT_URL_PARAMS);
+                            if (sinkOptions.isBulkLoad()) {
+                                targetDbUrl = DbUtil.withUrlParams(targetDbUrl, Collections.singletonMap("allowLoadLocalInfile", "true"));
+                            }
                             targetDbUsername = db.getUsername();
                             targetDbPassword = AESUtil.decrypt(db.getPassword());
+                            writeGovernor = WriteGovernor.get(db.getHost(), db.getPort(), db.getDbName());
+                            writeGovernor.configure(db.getMaxWriteRowsPerSec(), db.getMaxWriteBytesPerSec(), db.getMaxConcurrentWriters());
 
                             log.info("目标数据库连接信息已加载: URL={}, 用户名={}", targetDbUrl, targetDbUsername);
                             break;
@@ -137,18 +243,31 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
             log.warn("无法获取必要的Bean实例，某些功能可能不可用: {}", e.getMessage());
         }
 
-        // 测试数据库连接
+        // 创建目标数据库连接池并测试连接
         try {
             log.info("测试目标数据库[{}]连接...", targetDb);
             String testSql = "SELECT 1";
             if (targetDbUrl != null) {
-                // 使用目标数据库连接测试
+                // 使用目标数据库连接池测试
                 boolean isConnected = false;
                 try {
-                    java.sql.Connection conn = DbUtil.getConnection(targetDbUrl, targetDbUsername, targetDbPassword);
-                    isConnected = conn != null && !conn.isClosed();
-                    if (conn != null) {
-                        conn.close();
+                    targetDataSource = DbUtil.createPooledDataSource("FlinkCDCSink-" + taskId,
+                            targetDbUrl, targetDbUsername, targetDbPassword, sinkOptions.getEffectivePoolMaxActive());
+                    try (Connection conn = targetDataSource.getConnection()) {
+                        isConnected = conn != null && conn.isValid(5);
+                        maxStatementBytes = resolveMaxStatementBytes(conn);
+                    }
+                    metrics.registerPool(subtaskIndex, targetDataSource);
+                    metadataCache = new TableMetadataCache(targetDataSource, targetDb);
+                    metadataCache.load(getMappedTargetTables());
+                    if (sinkOptions.isBulkLoad()) {
+                        bulkLoader = new SnapshotBulkLoader(targetDataSource, targetDb,
+                                sinkOptions.getBulkLoadRows(), sinkOptions.getBulkLoadBytes(), snapshotProfile);
+                        log.info("任务[{}]已启用快照阶段批量导入, bulkLoadRows={}, bulkLoadBytes={}",
+                                taskId, sinkOptions.getBulkLoadRows(), sinkOptions.getBulkLoadBytes());
+                    }
+                    if (sinkOptions.isTransactional()) {
+                        loadCommittedOffset();
                     }
                 } catch (Exception e) {
                     log.error("目标数据库连接测试失败: {}", e.getMessage(), e);
@@ -159,313 +278,1190 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
                 List<Map<String, Object>> result = DbUtil.executeQuery(testSql);
                 log.info("默认数据源连接测试结果: {}", !result.isEmpty());
             }
-        } catch (Exception e) {
-            log.error("测试数据库连接失败: {}", e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("测试数据库连接失败: {}", e.getMessage(), e);
+        }
+
+        // 启动定期保存统计数据的调度任务（统计在子任务间共享，只由0号子任务保存）
+        if (subtaskIndex == 0) {
+            startStatisticsSavingTask();
+        }
+
+        if (!snapshotProfile.isEmpty()) {
+            log.info("任务[{}]快照阶段目标库会话设置: {}", taskId, snapshotProfile);
+        }
+
+        if (sinkOptions.isTransactional() && targetDataSource == null) {
+            throw new IllegalStateException("任务[" + taskId + "]事务模式需要可用的目标数据库连接池");
+        }
+
+        // 初始化攒批缓冲区
+        buffers = new LinkedHashMap<>();
+        bufferLock = new Object();
+        pendingWrites = new ArrayDeque<>();
+        writeLock = new Object();
+        if (sinkOptions.isBuffered() || bulkLoader != null) {
+            startLingerFlushTask();
+        }
+    }
+
+    /**
+     * 获取表映射中配置的所有目标表
+     */
+    private Set<String> getMappedTargetTables() {
+        Set<String> tables = new LinkedHashSet<>();
+        if (StringUtils.isNotEmpty(tableMapping)) {
+            try {
+                for (Object targetTable : JSONObject.parseObject(tableMapping).values()) {
+                    if (targetTable != null && StringUtils.isNotEmpty(targetTable.toString())) {
+                        tables.add(targetTable.toString());
+                    }
+                }
+            } catch (Exception e) {
+                log.error("解析表映射关系异常", e);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 根据目标库max_allowed_packet确定多行合并语句的最大字节数（预留一半余量给协议开销和字符编码膨胀）
+     */
+    private long resolveMaxStatementBytes(Connection conn) {
+        long limit = sinkOptions.getMaxStatementBytes();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@max_allowed_packet")) {
+            if (rs.next()) {
+                long maxAllowedPacket = rs.getLong(1);
+                limit = Math.min(limit, maxAllowedPacket / 2);
+                log.info("目标库max_allowed_packet: {}, 多行合并语句最大字节数: {}", maxAllowedPacket, limit);
+            }
+        } catch (SQLException e) {
+            log.warn("查询目标库max_allowed_packet失败，使用配置值: {}", e.getMessage());
+        }
+        return limit;
+    }
+
+    @Override
+    public void initializeState(FunctionInitializationContext context) throws Exception {
+        // 缓冲区在checkpoint时已全部刷新，无需恢复状态
+    }
+
+    @Override
+    public void snapshotState(FunctionSnapshotContext context) throws Exception {
+        checkAsyncFlushException();
+        // checkpoint前刷新所有缓冲数据，保证已确认的事件不会丢失
+        flushAll();
+        if (sinkOptions.isTransactional() && lastSeenOffset != null) {
+            CHECKPOINT_OFFSETS.computeIfAbsent(taskId, k -> new ConcurrentSkipListMap<>())
+                    .merge(context.getCheckpointId(), lastSeenOffset, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+    }
+
+    /**
+     * checkpoint完成时所有子任务都已提交了屏障之前的事件，把当前子任务的位点推进到屏障前的最大位点，
+     * 避免长期收不到事件的子任务用旧位点拖慢整个任务的恢复位置
+     */
+    @Override
+    public void notifyCheckpointComplete(long checkpointId) {
+        if (!sinkOptions.isTransactional()) {
+            return;
+        }
+        ConcurrentSkipListMap<Long, SinkOffset> offsets = CHECKPOINT_OFFSETS.get(taskId);
+        if (offsets == null) {
+            return;
+        }
+        SinkOffset barrierOffset = offsets.get(checkpointId);
+        offsets.headMap(checkpointId).clear();
+        if (barrierOffset == null) {
+            return;
+        }
+        synchronized (bufferLock) {
+            if (asyncFlushException != null || (committedOffset != null && barrierOffset.compareTo(committedOffset) <= 0)) {
+                return;
+            }
+            try (Connection conn = targetDataSource.getConnection()) {
+                SinkOffsetStore.save(conn, taskId, subtaskIndex, barrierOffset);
+                committedOffset = barrierOffset;
+            } catch (SQLException e) {
+                log.warn("任务[{}]子任务[{}]推进Sink位点失败: {}", taskId, subtaskIndex, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 加载当前子任务已提交的位点
+     */
+    private void loadCommittedOffset() throws SQLException {
+        try (Connection conn = targetDataSource.getConnection()) {
+            SinkOffsetStore.ensureTable(conn);
+            committedOffset = SinkOffsetStore.load(conn, taskId, subtaskIndex);
+        }
+        replaying = committedOffset != null;
+        log.info("任务[{}]子任务[{}]已启用事务模式，已提交位点: {}", taskId, subtaskIndex, committedOffset);
+    }
+
+    /**
+     * 抛出事务模式下提交失败的异常
+     */
+    private void checkAsyncFlushException() throws Exception {
+        Exception e = asyncFlushException;
+        if (e != null) {
+            throw new RuntimeException("任务[" + taskId + "]事务提交失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void invoke(ChangeRecord record, Context context) throws Exception {
+        log.debug("收到CDC数据: {}", record);
+        checkAsyncFlushException();
+
+        try {
+            String sourceTable = getSourceTable(record);
+
+            // 事务模式：跳过恢复前已提交的事件（事件按binlog顺序到达，出现第一条未提交的事件后不再比较）
+            SinkOffset eventOffset = null;
+            if (sinkOptions.isTransactional()) {
+                eventOffset = SinkOffset.fromEvent(record);
+                if (eventOffset != null) {
+                    lastSeenOffset = eventOffset;
+                    if (replaying && eventOffset.compareTo(committedOffset) <= 0) {
+                        metrics().add(sourceTable, "replaySkippedCount", 1);
+                        return;
+                    }
+                    replaying = false;
+                }
+            }
+
+            // 表结构变更：写出该表缓冲数据，按策略执行DDL并使该表的缓存失效
+            if (record.isSchemaChange()) {
+                handleSchemaChange(record, eventOffset);
+                return;
+            }
+
+            SinkRow row = toSinkRow(record, sourceTable);
+            if (row == null || bulkLoadRow(row)) {
+                return;
+            }
+
+            // 执行SQL：攒批模式先写入缓冲区，否则直接执行
+            if (sinkOptions.isBuffered()) {
+                bufferRow(row, eventOffset);
+            } else {
+                if (bulkLoader != null) {
+                    // 等待已取出的快照行导入完成，保证同一表的快照数据先于binlog变更写入
+                    writePending();
+                }
+                List<SinkRow> rows = Collections.singletonList(row);
+                acquireWritePermit(rows);
+                try {
+                    long startTime = System.currentTimeMillis();
+                    executeRow(row);
+                    recordPhaseWrite(rows, startTime);
+                } finally {
+                    releaseWritePermit();
+                }
+            }
+        } catch (Exception e) {
+            // 事务提交失败与当前事件无关，抛出使作业失败，从已提交位点恢复
+            checkAsyncFlushException();
+            recordEventError(record, e);
+        }
+    }
+
+    /**
+     * 获取事件的源表名
+     *
+     * @param record CDC事件
+     * @return 源表名，未知表返回null
+     */
+    private String getSourceTable(ChangeRecord record) {
+        int table = record.getTable();
+        return table >= 0 && table < sourceTables.size() ? sourceTables.get(table) : null;
+    }
+
+    /**
+     * 记录CDC事件处理异常
+     *
+     * @param record CDC事件
+     * @param e 异常
+     */
+    private void recordEventError(ChangeRecord record, Exception e) {
+        String value = record.toJson(getSourceTable(record)).toJSONString();
+        log.error("处理CDC数据异常: {}, 原始数据: {}", e.getMessage(), value, e);
+        metrics().recordError(null);
+
+        // 记录同步异常
+        SyncException exception = new SyncException();
+        exception.setTaskId(taskId);
+        exception.setErrorMessage("处理CDC数据异常: " + e.getMessage() + "\n原始数据: " + value);
+        exception.setErrorTime(new Date());
+
+        // 使用DAO保存异常信息
+        if (syncExceptionDao != null) {
+            try {
+                syncExceptionDao.insert(exception);
+            } catch (Exception ex) {
+                log.error("保存异常记录失败: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * 将CDC事件转换为行变更，并更新操作计数
+     *
+     * @param record CDC事件
+     * @param sourceTable 源表名
+     * @return 行变更，事件无需写入时返回null
+     */
+    private SinkRow toSinkRow(ChangeRecord record, String sourceTable) {
+        String op = record.getOp();
+
+        // 跳过可能导致NPE的无效事件
+        if (sourceTable == null || ("d".equals(op) && record.getBefore() == null && record.getKeyValues() == null)) {
+            log.warn("跳过无效的事件，数据结构不完整: {}", record);
+            return null;
+        }
+
+        // 获取目标表名（通过映射关系）
+        String targetTable = getTargetTable(sourceTable);
+        if (StringUtils.isEmpty(targetTable)) {
+            log.warn("未找到表[{}]的映射关系，跳过处理, 任务ID={}", sourceTable, taskId);
+            return null;
+        }
+
+        // 目标表元数据，未加载到时回退到按列名推断
+        TableMetadataCache.TableMetadata metadata = metadataCache != null ? metadataCache.get(targetTable) : null;
+
+        // 构建行变更
+        SinkRow row;
+        if ("c".equals(op) || "r".equals(op) || "u".equals(op)) {
+            Map<String, Object> afterObj = record.getAfterImage();
+            if (afterObj == null || afterObj.isEmpty()) {
+                log.warn("操作[{}]的after数据为空，跳过处理", op);
+                return null;
+            }
+
+            // 行主键取自转换前的数据，与删除事件的before数据保持一致
+            Object rowKey = getRowKey(record, metadata, afterObj);
+
+            // 更新事件：在类型转换前比较before和after，得到目标表中实际变更的列
+            Map<String, Object> beforeObj = "u".equals(op) ? record.getBeforeImage() : null;
+            List<String> updateKeyColumns = null;
+            Set<String> changedColumns = null;
+            if ("u".equals(op) && sinkOptions.isUpdateChangedColumns() && metadata != null && beforeObj != null) {
+                updateKeyColumns = metadata.findKey(beforeObj);
+                if (updateKeyColumns != null) {
+                    changedColumns = getChangedColumns(metadata, beforeObj, afterObj);
+                }
+            }
+            List<String> columns = new ArrayList<>(afterObj.size());
+            List<Object> vals = new ArrayList<>(afterObj.size());
+
+            for (String key : getOrderedColumns(metadata, afterObj)) {
+                Object valObj = afterObj.get(key);
+
+                // 处理日期时间类型：有目标表元数据时按列类型判断，否则按列名推断
+                if (valObj != null && isTemporalColumn(metadata, key)) {
+                    valObj = convertTemporalValue(metadata, key, valObj);
+                    afterObj.put(key, valObj);
+                }
+
+                // 收集列和参数值，SQL由模板缓存生成
+                columns.add(key);
+                vals.add(valObj);
+            }
+
+            // INSERT ... ON DUPLICATE KEY UPDATE
+            row = new SinkRow(SinkRow.Kind.UPSERT, op, sourceTable, targetTable, rowKey, columns, vals);
+
+            // UPDATE ... SET <变更列> WHERE <主键>，目标表列均未变化的更新直接跳过
+            if (changedColumns != null) {
+                if (changedColumns.isEmpty()) {
+                    metrics().add(sourceTable, "noopUpdateSkipped", 1);
+                    log.debug("表[{}]的更新事件没有目标表列变化，跳过", sourceTable);
+                    return null;
+                }
+                row = toUpdateRow(row, metadata, beforeObj, updateKeyColumns, changedColumns);
+            }
+
+            // 更新统计信息
+            if ("c".equals(op) || "r".equals(op)) {
+                metrics().recordInsert(sourceTable);
+            } else {
+                metrics().recordUpdate(sourceTable);
+            }
+        } else if ("d".equals(op)) {
+            // 处理删除操作
+            Map<String, Object> beforeObj = record.getBeforeImage();
+            if (beforeObj == null || beforeObj.isEmpty()) {
+                log.warn("删除操作的before数据为空，尝试使用CDC事件中的主键");
+
+                Map<String, Object> keyMap = record.getKeyImage();
+                if (!keyMap.isEmpty()) {
+                    row = new SinkRow(SinkRow.Kind.DELETE, op, sourceTable, targetTable, getRowKey(record, metadata, keyMap),
+                            new ArrayList<>(keyMap.keySet()), new ArrayList<>(keyMap.values()));
+                    log.debug("基于CDC主键构建的删除条件: {}", keyMap);
+                } else {
+                    log.warn("无法从CDC事件中提取主键信息，无法执行删除操作");
+                    return null;
+                }
+            } else {
+                // 使用主键或所有字段进行删除
+                List<String> whereColumns = new ArrayList<>();
+                List<Object> whereValues = new ArrayList<>();
+
+                // 优先使用目标表的主键或非空唯一键，保证删除命中索引
+                List<String> keyColumns = metadata != null ? metadata.findKey(beforeObj) : null;
+                String id = beforeObj.get("id") != null ? beforeObj.get("id").toString() : null;
+                if (keyColumns != null) {
+                    for (String column : keyColumns) {
+                        whereColumns.add(column);
+                        whereValues.add(convertKeyValue(metadata, column, beforeObj.get(column)));
+                    }
+                } else if (id != null && !id.isEmpty()) {
+                    whereColumns.add("id");
+                    whereValues.add(id);
+                } else {
+                    // 如果没有id字段，使用所有非空字段构建条件
+                    for (Map.Entry<String, Object> entry : beforeObj.entrySet()) {
+                        if (entry.getValue() != null) {
+                            whereColumns.add(entry.getKey());
+                            whereValues.add(entry.getValue());
+                        }
+                    }
+
+                    if (whereColumns.isEmpty()) {
+                        log.warn("无法生成有效的WHERE子句，跳过删除操作");
+                        return null;
+                    }
+                }
+                row = new SinkRow(SinkRow.Kind.DELETE, op, sourceTable, targetTable, getRowKey(record, metadata, beforeObj), whereColumns, whereValues);
+            }
+
+            metrics().recordDelete(sourceTable);
+        } else {
+            log.warn("未处理的操作类型: {}", op);
+            return null;
+        }
+        return row;
+    }
+
+    /**
+     * 执行单行变更，失败时记录异常
+     *
+     * @param row 行变更
+     */
+    private void executeRow(SinkRow row) {
+        String sourceTable = row.getSourceTable();
+        String sql = templateCache.getSql(row);
+        List<Object> params = row.getValues();
+        log.debug("执行SQL: {}, 参数: {}", sql, params);
+        int result = 0;
+        try {
+            // 使用目标数据库连接池执行SQL
+            if (targetDataSource != null) {
+                try (Connection conn = targetDataSource.getConnection()) {
+                    if (row.getKind() == SinkRow.Kind.UPDATE) {
+                        try (PreparedStatement stmt = clientPrepareStatement(conn, sql)) {
+                            DbUtil.bindParams(stmt, params);
+                            result = stmt.executeUpdate();
+                        }
+                    } else {
+                        result = DbUtil.insertOrUpdate(conn, sql, params);
+                    }
+                }
+            } else if (targetDbUrl != null && targetDbUsername != null && targetDbPassword != null) {
+                result = DbUtil.insertOrUpdateWithTargetDb(sql, params, targetDbUrl, targetDbUsername, targetDbPassword);
+            } else {
+                // 如果没有目标数据库连接信息，使用默认数据源
+                log.warn("未配置目标数据库连接信息，使用默认数据源执行SQL");
+                result = DbUtil.insertOrUpdate(sql, params);
+            }
+            log.debug("SQL执行结果: {}, 影响行数: {}", result > 0 ? "成功" : "失败", result);
+            // UPDATE未命中目标行（如目标库缺少该行），改为完整upsert
+            if (result == 0 && row.getKind() == SinkRow.Kind.UPDATE) {
+                metrics().add(sourceTable, "updateFallbackCount", 1);
+                executeRow(row.getFallback());
+                return;
+            }
+        } catch (Exception e) {
+            log.error("执行SQL异常: {}，错误: {}", sql, e.getMessage(), e);
+            metrics().recordError(sourceTable);
+
+            // 记录同步异常
+            SyncException exception = new SyncException();
+            exception.setTaskId(taskId);
+            exception.setTableName(sourceTable);
+            exception.setErrorMessage("执行SQL异常: " + e.getMessage() + "\nSQL: " + sql + "\n参数: " + params);
+            exception.setErrorTime(new Date());
+
+            // 使用DAO保存异常信息
+            if (syncExceptionDao != null) {
+                try {
+                    syncExceptionDao.insert(exception);
+                } catch (Exception ex) {
+                    log.error("保存异常记录失败: {}", ex.getMessage(), ex);
+                }
+            }
+        }
+
+        if (result <= 0) {
+            log.error("执行SQL失败: {}, 参数: {}", sql, params);
+            metrics().recordError(sourceTable);
+
+            // 记录同步异常
+            SyncException exception = new SyncException();
+            exception.setTaskId(taskId);
+            exception.setTableName(sourceTable);
+            exception.setErrorMessage("执行SQL失败: " + sql + "\n参数: " + params);
+            exception.setErrorTime(new Date());
+
+            // 使用DAO保存异常信息
+            if (syncExceptionDao != null) {
+                try {
+                    syncExceptionDao.insert(exception);
+                } catch (Exception ex) {
+                    log.error("保存异常记录失败: {}", ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将行变更写入目标表缓冲区，达到行数或字节数阈值时立即刷新
+     */
+    private void bufferRow(SinkRow row, SinkOffset eventOffset) {
+        boolean flush = false;
+        synchronized (bufferLock) {
+            if (eventOffset != null) {
+                pendingOffset = eventOffset;
+            }
+            TableBuffer buffer = buffers.computeIfAbsent(row.getTargetTable(),
+                    k -> new TableBuffer(row.getSourceTable(), new AdaptiveBatchController(row.getSourceTable(), sinkOptions)));
+            // 修改主键的UPDATE不按主键合并，先写出该表已缓冲的行，避免之后旧主键上的变更覆盖其之前的缓冲行而乱序
+            if (row.isKeyChange() && sinkOptions.isCompaction() && buffer.size() > 0) {
+                metrics().add(row.getSourceTable(), "keyChangeFlushCount", 1);
+                if (sinkOptions.isTransactional()) {
+                    flushTransactional();
+                } else {
+                    flushBuffer(buffer);
+                }
+                flush = true;
+            }
+            int compacted = buffer.add(row, sinkOptions.isCompaction());
+            if (compacted > 0) {
+                metrics().add(row.getSourceTable(), "compactedCount", compacted);
+            }
+            if (buffer.size() >= buffer.controller.getBatchSize() || buffer.bytes >= sinkOptions.getBatchBytes()) {
+                if (sinkOptions.isTransactional()) {
+                    flushTransactional();
+                } else {
+                    flushBuffer(buffer);
+                }
+                flush = true;
+            }
+        }
+        if (flush) {
+            writePending();
+        }
+    }
+
+    /**
+     * 快照行交给批量导入；非快照行使该表进入binlog阶段，先导入剩余的快照行，再走逐行写入
+     * （剩余快照行在bufferLock内先于该表之后的缓冲数据加入写入队列，保证同一表的快照数据先于binlog变更写入）
+     *
+     * @param row 行变更
+     * @return 是否已由批量导入接管
+     */
+    private boolean bulkLoadRow(SinkRow row) {
+        if (bulkLoader == null) {
+            return false;
+        }
+        boolean loaded;
+        boolean flush;
+        synchronized (bufferLock) {
+            if (!"r".equals(row.getOp())) {
+                flush = enqueueSnapshotRows(bulkLoader.finishSnapshot(row.getTargetTable()));
+                loaded = false;
+            } else if (!bulkLoader.isSnapshotPhase(row.getTargetTable())) {
+                flush = false;
+                loaded = false;
+            } else {
+                flush = enqueueSnapshotRows(bulkLoader.add(row));
+                loaded = true;
+            }
+        }
+        if (flush) {
+            writePending();
+        }
+        return loaded;
+    }
+
+    /**
+     * 把一批快照行加入写入队列（在bufferLock内调用）
+     *
+     * @return 是否加入了写入队列
+     */
+    private boolean enqueueSnapshotRows(List<SinkRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return false;
+        }
+        pendingWrites.add(() -> loadSnapshotRows(rows));
+        return true;
+    }
+
+    /**
+     * 导入一批快照行，失败时回退为批量upsert
+     */
+    private void loadSnapshotRows(List<SinkRow> rows) {
+        String sourceTable = rows.get(0).getSourceTable();
+        acquireWritePermit(rows);
+        long startTime = System.currentTimeMillis();
+        try {
+            long bytes = bulkLoader.load(rows);
+            metrics().add(sourceTable, "bulkLoadCount", 1);
+            metrics().add(sourceTable, "bulkLoadRows", rows.size());
+            metrics().add(sourceTable, "bulkLoadBytes", bytes);
+        } catch (SQLException e) {
+            // 导入失败或有警告时按普通写入重放，REPLACE/upsert重复写入是幂等的，逐行失败的记录为同步异常
+            log.warn("表[{}]批量导入失败，回退为批量upsert，行数: {}, 原因: {}", sourceTable, rows.size(), e.getMessage());
+            metrics().add(sourceTable, "bulkLoadFallbackCount", 1);
+            writeRows(rows, sourceTable);
+        } finally {
+            releaseWritePermit();
+        }
+        recordPhaseWrite(rows, startTime);
+    }
+
+    /**
+     * 刷新所有表的缓冲区
+     */
+    private void flushAll() {
+        if (bufferLock == null) {
+            return;
+        }
+        synchronized (bufferLock) {
+            if (bulkLoader != null) {
+                for (List<SinkRow> rows : bulkLoader.drainExpired(-1)) {
+                    enqueueSnapshotRows(rows);
+                }
+            }
+            if (sinkOptions.isTransactional()) {
+                flushTransactional();
+            } else {
+                for (TableBuffer buffer : buffers.values()) {
+                    flushBuffer(buffer);
+                }
+            }
+        }
+        writePending();
+    }
+
+    /**
+     * 刷新等待时间超过lingerMs的缓冲区
+     */
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (bufferLock) {
+            if (bulkLoader != null) {
+                for (List<SinkRow> rows : bulkLoader.drainExpired(sinkOptions.getBulkLoadLingerMs())) {
+                    enqueueSnapshotRows(rows);
+                }
+            }
+            for (TableBuffer buffer : buffers.values()) {
+                if (buffer.size() > 0 && now - buffer.firstTime >= buffer.controller.getLingerMs()) {
+                    if (sinkOptions.isTransactional()) {
+                        // 事务模式下所有表一起提交，保证位点之前的数据都已写入
+                        flushTransactional();
+                        break;
+                    }
+                    flushBuffer(buffer);
+                }
+            }
+        }
+        writePending();
+    }
+
+    /**
+     * 取出缓冲区中的行变更加入写入队列（在bufferLock内调用），由writePending()在锁外写入
+     */
+    private void flushBuffer(TableBuffer buffer) {
+        if (buffer.size() == 0) {
+            return;
+        }
+        FlushBatch batch = new FlushBatch(buffer, buffer.drain(sinkOptions.isCompaction()), buffer.bytes);
+        buffer.reset();
+        pendingWrites.add(() -> writeBatch(batch));
+    }
+
+    /**
+     * 按加入顺序写出写入队列中的批次，同一时间只有一个线程写入；
+     * 调用返回时，调用前已加入队列的批次都已写出
+     */
+    private void writePending() {
+        synchronized (writeLock) {
+            for (Runnable write = pollPendingWrite(); write != null; write = pollPendingWrite()) {
+                write.run();
+            }
+        }
+    }
+
+    private Runnable pollPendingWrite() {
+        synchronized (bufferLock) {
+            return pendingWrites.poll();
+        }
+    }
+
+    /**
+     * 以JDBC批量方式执行一批行变更，批量失败时回退为逐条执行以定位失败的行
+     * （缓冲区中均为upsert/delete，重复执行是幂等的）
+     */
+    private void writeBatch(FlushBatch batch) {
+        acquireWritePermit(batch.rows);
+        long startTime = System.currentTimeMillis();
+        SQLException error;
+        try {
+            error = writeRows(batch.rows, batch.buffer.sourceTable);
+        } finally {
+            releaseWritePermit();
+        }
+        recordPhaseWrite(batch.rows, startTime);
+        recordFlush(batch, System.currentTimeMillis() - startTime, error);
+    }
+
+    /**
+     * 记录一批数据的刷新结果，并据此调整该表的批次大小
+     */
+    private void recordFlush(FlushBatch batch, long elapsedMillis, SQLException error) {
+        TableBuffer buffer = batch.buffer;
+        buffer.controller.onFlush(batch.rows.size(), elapsedMillis, error);
+        recordEffectiveBatch(buffer);
+        metrics().add(buffer.sourceTable, "flushCount", 1);
+        metrics().add(buffer.sourceTable, "flushRows", batch.rows.size());
+        metrics().add(buffer.sourceTable, "flushBytes", batch.bytes);
+    }
+
+    /**
+     * 申请目标库写入额度，限流等待时间计入任务统计，写入完成后必须调用releaseWritePermit()
+     */
+    private void acquireWritePermit(List<SinkRow> rows) {
+        if (writeGovernor == null) {
+            return;
+        }
+        long bytes = 0;
+        for (SinkRow row : rows) {
+            bytes += row.getBytes();
+        }
+        long throttled = writeGovernor.acquire(rows.size(), bytes);
+        if (throttled > 0) {
+            metrics().addThrottleMillis(throttled);
+        }
+    }
+
+    private void releaseWritePermit() {
+        if (writeGovernor != null) {
+            writeGovernor.release();
+        }
+    }
+
+    /**
+     * 记录表当前的自适应批次大小和等待时间
+     */
+    private void recordEffectiveBatch(TableBuffer buffer) {
+        metrics().set(buffer.sourceTable, "effectiveBatchSize", buffer.controller.getBatchSize());
+        metrics().set(buffer.sourceTable, "effectiveLingerMs", buffer.controller.getLingerMs());
+    }
+
+    /**
+     * 以JDBC批量方式写入一组行变更，批量失败时回退为逐条执行以定位失败的行
+     *
+     * @param rows 行变更
+     * @param label 日志标识
+     * @return 批量写入失败的异常，成功时返回null
+     */
+    private SQLException writeRows(List<SinkRow> rows, String label) {
+        if (targetDataSource == null) {
+            for (SinkRow row : rows) {
+                executeRow(row);
+            }
+            return null;
+        }
+        try (Connection conn = targetDataSource.getConnection()) {
+            if (!snapshotProfile.isEmpty() && isSnapshotRows(rows)) {
+                executeSnapshotBatch(conn, rows);
+            } else {
+                executeBatch(conn, rows);
+            }
+            log.debug("[{}]批量写入完成，行数: {}", label, rows.size());
+            return null;
+        } catch (SQLException e) {
+            log.warn("[{}]批量写入失败，回退为逐条执行: {}", label, e.getMessage());
+            for (SinkRow row : rows) {
+                executeRow(row);
+            }
+            return e;
+        }
+    }
+
+    /**
+     * 快照批次：放宽会话设置，在一个事务中写入，完成后恢复会话设置
+     */
+    private void executeSnapshotBatch(Connection conn, List<SinkRow> rows) throws SQLException {
+        snapshotProfile.apply(conn);
+        conn.setAutoCommit(false);
+        try {
+            executeBatch(conn, rows);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            snapshotProfile.restore(conn);
+        }
+    }
+
+    private static boolean isSnapshotRows(List<SinkRow> rows) {
+        for (SinkRow row : rows) {
+            if (!"r".equals(row.getOp())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按表和阶段（snapshot/binlog）记录写入行数和耗时，一批中包含多张表时每张表都计入整批耗时
+     *
+     * @param rows 已写入的行
+     * @param startTime 写入开始时间
+     */
+    private void recordPhaseWrite(List<SinkRow> rows, long startTime) {
+        long endTime = System.currentTimeMillis();
+        Map<List<String>, Integer> counts = new HashMap<>();
+        for (SinkRow row : rows) {
+            String phase = "r".equals(row.getOp()) ? "snapshot" : "binlog";
+            counts.merge(Arrays.asList(row.getSourceTable(), phase), 1, Integer::sum);
+        }
+        counts.forEach((key, count) -> metrics().recordPhase(key.get(0), key.get(1), count, startTime, endTime));
+    }
+
+    /**
+     * 转换并写入一组CDC事件（异步写入模式下由写入线程调用，同一主键的事件总是在同一线程中按顺序处理）
+     *
+     * @param values CDC事件
+     */
+    void applyEvents(List<ChangeRecord> values) {
+        List<SinkRow> rows = new ArrayList<>(values.size());
+        for (ChangeRecord value : values) {
+            try {
+                if (value.isSchemaChange()) {
+                    // 先写出之前的行，再处理表结构变更
+                    applyRows(rows);
+                    rows = new ArrayList<>();
+                    handleSchemaChange(value, null);
+                    continue;
+                }
+                SinkRow row = toSinkRow(value, getSourceTable(value));
+                if (row != null) {
+                    rows.add(row);
+                }
+            } catch (Exception e) {
+                recordEventError(value, e);
+            }
         }
-
-        // 启动定期保存统计数据的调度任务
-        startStatisticsSavingTask();
+        applyRows(rows);
     }
 
-    @Override
-    public void invoke(String value, Context context) throws Exception {
-        // 增强日志，确保记录所有CDC事件
-        log.info("收到CDC数据: {}", value);
-
+    private void applyRows(List<SinkRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        acquireWritePermit(rows);
+        long startTime = System.currentTimeMillis();
         try {
-            JSONObject obj = JSONObject.parseObject(value);
-            String sourceTable = obj.getString("tableName");
-            String op = obj.getString("op");
-            String sourceDb = obj.getString("db");
-
-            log.info("处理CDC事件: 操作={}, 数据库={}, 表={}, 任务ID={}", op, sourceDb, sourceTable, taskId);
+            writeRows(rows, "异步写入-任务" + taskId);
+        } finally {
+            releaseWritePermit();
+        }
+        recordPhaseWrite(rows, startTime);
+        Set<String> tables = new HashSet<>();
+        for (SinkRow row : rows) {
+            tables.add(row.getSourceTable());
+            metrics().add(row.getSourceTable(), "flushRows", 1);
+            metrics().add(row.getSourceTable(), "flushBytes", row.getBytes());
+        }
+        for (String table : tables) {
+            metrics().add(table, "flushCount", 1);
+        }
+    }
 
-            // 跳过可能导致NPE的无效事件
-            if (obj == null || (op != null && "d".equals(op) && obj.getJSONObject("before") == null)) {
-                log.warn("跳过无效的删除事件，数据结构不完整: {}", value);
-                return;
+    /**
+     * 事务模式刷新：取出所有表的缓冲数据和最新位点加入写入队列（在bufferLock内调用），
+     * 由writePending()在同一个目标库事务中提交
+     */
+    private void flushTransactional() {
+        if (asyncFlushException != null) {
+            // 已有提交失败，不再重试，等待作业失败后从已提交位点恢复
+            throw new IllegalStateException("任务[" + taskId + "]事务提交已失败: " + asyncFlushException.getMessage(), asyncFlushException);
+        }
+        List<FlushBatch> batches = new ArrayList<>();
+        for (TableBuffer buffer : buffers.values()) {
+            if (buffer.size() > 0) {
+                batches.add(new FlushBatch(buffer, buffer.drain(sinkOptions.isCompaction()), buffer.bytes));
+                buffer.reset();
             }
+        }
+        if (batches.isEmpty() && pendingOffset == null) {
+            return;
+        }
+        SinkOffset offset = pendingOffset;
+        pendingOffset = null;
+        pendingWrites.add(() -> commitTransaction(batches, offset));
+    }
 
-            // 获取目标表名（通过映射关系）
-            String targetTable = getTargetTable(sourceTable);
-            if (StringUtils.isEmpty(targetTable)) {
-                log.warn("未找到表[{}]的映射关系，跳过处理, 任务ID={}", sourceTable, taskId);
-                return;
+    /**
+     * 在同一个目标库事务中写入各表数据并保存位点，
+     * 失败时回滚并抛出异常，由Flink从checkpoint重启，已提交的事件在恢复时被跳过
+     */
+    private void commitTransaction(List<FlushBatch> batches, SinkOffset offset) {
+        if (asyncFlushException != null) {
+            throw new IllegalStateException("任务[" + taskId + "]事务提交已失败: " + asyncFlushException.getMessage(), asyncFlushException);
+        }
+        List<SinkRow> written = new ArrayList<>();
+        for (FlushBatch batch : batches) {
+            written.addAll(batch.rows);
+        }
+        acquireWritePermit(written);
+        long startTime = System.currentTimeMillis();
+        try (Connection conn = targetDataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (FlushBatch batch : batches) {
+                    executeBatch(conn, batch.rows);
+                }
+                if (offset != null) {
+                    SinkOffsetStore.save(conn, taskId, subtaskIndex, offset);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
+        } catch (SQLException e) {
+            log.error("任务[{}]事务提交失败，已回滚: {}", taskId, e.getMessage(), e);
+            asyncFlushException = e;
+            throw new RuntimeException("任务[" + taskId + "]事务提交失败: " + e.getMessage(), e);
+        } finally {
+            releaseWritePermit();
+        }
 
-            log.info("映射表: 源表={}，目标表={}, 任务ID={}", sourceTable, targetTable, taskId);
-
-            // 处理SQL
-            String sql = "";
-            if ("c".equals(op) || "r".equals(op) || "u".equals(op)) {
-                JSONObject afterObj = obj.getJSONObject("after");
-                if (afterObj == null || afterObj.isEmpty()) {
-                    log.warn("操作[{}]的after数据为空，跳过处理", op);
-                    return;
-                }
-
-                log.info("变更后数据: {}", afterObj);
-
-                String columns = "";
-                String vals = "";
-                String updates = "";
-
-                for (Map.Entry<String, Object> entry : afterObj.entrySet()) {
-                    String key = entry.getKey();
-                    Object valObj = entry.getValue();
-
-                    // 处理日期时间类型
-                    if (valObj != null && (key.endsWith("_time") || key.endsWith("_date") || key.equals("create_time") || key.equals("update_time"))) {
-                        // 1. 处理字符串类型
-                        if (valObj instanceof String) {
-                            String val = valObj.toString().trim();
-                            if (val.isEmpty() || "null".equalsIgnoreCase(val)) {
-                                valObj = null;
-                            } else if (val.contains("T")) {
-                                // 处理ISO格式
-                                val = val.replace("T", " ").replace("Z", "");
-                                valObj = val;
-                            } else if (val.matches("\\d{4}[-/]\\d{2}[-/]\\d{2}.*")) {
-                                // 处理 yyyy-MM-dd HH:mm:ss 或 yyyy/MM/dd HH:mm:ss
-                                val = val.replace("/", "-");
-                                valObj = val;
-                            }
-                        }
-                        // 2. 处理时间戳类型
-                        else if (valObj instanceof Long || valObj instanceof Integer) {
-                            long timestamp = Long.parseLong(valObj.toString());
-                            Instant instant = Instant.ofEpochMilli(timestamp);
-                            ZoneId zoneId = ZoneId.of("Asia/Shanghai");
-                            LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, zoneId);
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                            valObj = localDateTime.format(formatter);
-                        }
-                        // 3. 处理其他类型（如 java.util.Date）
-                        else if (valObj instanceof Date) {
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                            LocalDateTime localDateTime = ((Date) valObj).toInstant().atZone(ZoneId.of("Asia/Shanghai")).toLocalDateTime();
-                            valObj = localDateTime.format(formatter);
-                        }
-                        // 4. 回写
-                        afterObj.put(key, valObj);
-                    }
+        if (offset != null) {
+            synchronized (bufferLock) {
+                committedOffset = offset;
+            }
+        }
+        recordPhaseWrite(written, startTime);
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        for (FlushBatch batch : batches) {
+            recordFlush(batch, elapsedMillis, null);
+        }
+    }
 
-                    // 构建SQL片段
-                    columns += "`" + key + "`,";
-                    if (valObj == null) {
-                        vals += "NULL,";
-                        updates += "`" + key + "`=NULL,";
-                    } else if (valObj instanceof String) {
-                        // 转义单引号，防止SQL注入
-                        String safeVal = valObj.toString().replace("'", "''");
-                        vals += "'" + safeVal + "',";
-                        updates += "`" + key + "`='" + safeVal + "',";
-                    } else {
-                        vals += valObj + ",";
-                        updates += "`" + key + "`=" + valObj + ",";
+    /**
+     * 按顺序批量执行行变更：相邻且列集合相同的upsert合并为多行语句，相邻且条件列相同的delete合并为IN语句，
+     * 其余行中相邻且SQL模板相同的共用一个PreparedStatement批次
+     */
+    private void executeBatch(Connection conn, List<SinkRow> rows) throws SQLException {
+        PreparedStatement stmt = null;
+        String currentSql = null;
+        List<SinkRow> batchRows = new ArrayList<>();
+        try {
+            int index = 0;
+            while (index < rows.size()) {
+                SinkRow row = rows.get(index);
+                int mergeable = countMergeable(rows, index);
+                if (mergeable > 1) {
+                    // 先执行已累积的批次，保证行顺序
+                    if (stmt != null) {
+                        executeStatementBatch(conn, stmt, batchRows);
+                        stmt.close();
+                        stmt = null;
+                        currentSql = null;
                     }
+                    executeMultiRow(conn, rows.subList(index, index + mergeable));
+                    index += mergeable;
+                    continue;
                 }
+                index++;
 
-                // 去除最后的逗号
-                if (columns.endsWith(",")) {
-                    columns = columns.substring(0, columns.length() - 1);
-                }
-                if (vals.endsWith(",")) {
-                    vals = vals.substring(0, vals.length() - 1);
-                }
-                if (updates.endsWith(",")) {
-                    updates = updates.substring(0, updates.length() - 1);
+                String sql = templateCache.getSql(row);
+                if (!sql.equals(currentSql)) {
+                    if (stmt != null) {
+                        executeStatementBatch(conn, stmt, batchRows);
+                        stmt.close();
+                    }
+                    stmt = row.getKind() == SinkRow.Kind.UPDATE ? clientPrepareStatement(conn, sql) : conn.prepareStatement(sql);
+                    currentSql = sql;
                 }
+                DbUtil.bindParams(stmt, row.getValues());
+                stmt.addBatch();
+                batchRows.add(row);
+            }
+            if (stmt != null) {
+                executeStatementBatch(conn, stmt, batchRows);
+            }
+        } finally {
+            if (stmt != null) {
+                stmt.close();
+            }
+        }
+    }
 
-                // 生成INSERT或UPDATE SQL
-                sql = "INSERT INTO `" + targetDb + "`.`" + targetTable + "` (" + columns + ") VALUES (" + vals + ")" +
-                        " ON DUPLICATE KEY UPDATE " + updates;
-
-                // 更新统计信息
-                if ("c".equals(op) || "r".equals(op)) {
-                    insertCount.incrementAndGet();
-                    // 更新表级别计数器
-                    tableInsertCount.computeIfAbsent(sourceTable, k -> new AtomicInteger(0)).incrementAndGet();
-                } else {
-                    updateCount.incrementAndGet();
-                    // 更新表级别计数器
-                    tableUpdateCount.computeIfAbsent(sourceTable, k -> new AtomicInteger(0)).incrementAndGet();
-                }
-            } else if ("d".equals(op)) {
-                // 处理删除操作
-                JSONObject beforeObj = obj.getJSONObject("before");
-                if (beforeObj == null || beforeObj.isEmpty()) {
-                    log.warn("删除操作的before数据为空，尝试从source部分获取必要信息");
-
-                    // 尝试从source部分获取表信息，构建基本删除语句
-                    JSONObject source = obj.getJSONObject("source");
-                    if (source != null && source.containsKey("table")) {
-                        String table = source.getString("table");
-
-                        // 尝试从主体获取主键值
-                        JSONObject payload = null;
-                        if (obj.containsKey("payload")) {
-                            payload = obj.getJSONObject("payload");
-                        }
-
-                        Map<String, Object> keyMap = extractPrimaryKeyValues(obj, payload);
-
-                        if (!keyMap.isEmpty()) {
-                            StringBuilder whereClause = new StringBuilder();
-                            for (Map.Entry<String, Object> entry : keyMap.entrySet()) {
-                                if (whereClause.length() > 0) {
-                                    whereClause.append(" AND ");
-                                }
-
-                                String key = entry.getKey();
-                                Object val = entry.getValue();
-
-                                if (val instanceof String) {
-                                    // 转义单引号
-                                    String safeVal = val.toString().replace("'", "''");
-                                    whereClause.append("`").append(key).append("`='").append(safeVal).append("'");
-                                } else {
-                                    whereClause.append("`").append(key).append("`=").append(val);
-                                }
-                            }
-
-                            sql = "DELETE FROM `" + targetDb + "`.`" + targetTable + "` WHERE " + whereClause;
-                            log.info("基于CDC元数据构建的删除语句: {}", sql);
-                        } else {
-                            log.warn("无法从CDC事件中提取主键信息，无法执行删除操作");
-                            return;
-                        }
-                    } else {
-                        log.warn("无法从source部分获取表信息，跳过处理");
-                        return;
-                    }
-                } else {
-                    log.info("删除前数据: {}", beforeObj);
+    /**
+     * 执行一个PreparedStatement批次，未命中目标行（影响行数为0）的UPDATE改为完整upsert重新写入
+     */
+    private void executeStatementBatch(Connection conn, PreparedStatement stmt, List<SinkRow> batchRows) throws SQLException {
+        int[] results = stmt.executeBatch();
+        List<SinkRow> missed = new ArrayList<>();
+        for (int i = 0; i < results.length && i < batchRows.size(); i++) {
+            SinkRow row = batchRows.get(i);
+            if (results[i] == 0 && row.getKind() == SinkRow.Kind.UPDATE) {
+                missed.add(row.getFallback());
+                metrics().add(row.getSourceTable(), "updateFallbackCount", 1);
+            }
+        }
+        batchRows.clear();
+        if (!missed.isEmpty()) {
+            executeBatch(conn, missed);
+        }
+    }
 
-                    // 使用主键或所有字段进行删除
-                    StringBuilder whereClause = new StringBuilder();
+    /**
+     * 计算从start开始可合并为一条多行语句的行数（同类型、同表、同列集合的相邻行），
+     * 受行数、参数个数和语句字节数上限约束
+     */
+    private int countMergeable(List<SinkRow> rows, int start) {
+        SinkRow first = rows.get(start);
+        int maxRowsPerStatement = getMaxRowsPerStatement(first.getKind());
+        if (maxRowsPerStatement <= 1) {
+            return 1;
+        }
+        int columnCount = Math.max(1, first.getColumns().size());
+        int maxRows = Math.min(maxRowsPerStatement, MAX_PREPARED_STATEMENT_PARAMS / columnCount);
+        long bytes = 0;
+        int count = 0;
+        for (int i = start; i < rows.size() && count < maxRows; i++) {
+            SinkRow row = rows.get(i);
+            if (row.getKind() != first.getKind() || !row.getTargetTable().equals(first.getTargetTable())
+                    || !row.getColumns().equals(first.getColumns())) {
+                break;
+            }
+            // 每列额外预留占位符和分隔符的开销
+            bytes += row.getBytes() + columnCount * 4L;
+            if (count > 0 && bytes > maxStatementBytes) {
+                break;
+            }
+            count++;
+        }
+        return Math.max(1, count);
+    }
 
-                    // 优先尝试使用id字段
-                    String id = beforeObj.getString("id");
-                    if (id != null && !id.isEmpty()) {
-                        sql = "DELETE FROM `" + targetDb + "`.`" + targetTable + "` WHERE id='" + id.replace("'", "''") + "'";
-                    } else {
-                        // 如果没有id字段，使用所有非空字段构建条件
-                        for (Map.Entry<String, Object> entry : beforeObj.entrySet()) {
-                            String key = entry.getKey();
-                            Object fieldValue = entry.getValue();
-
-                            if (fieldValue != null) {
-                                if (whereClause.length() > 0) {
-                                    whereClause.append(" AND ");
-                                }
-
-                                if (fieldValue instanceof String) {
-                                    // 转义单引号
-                                    String safeVal = fieldValue.toString().replace("'", "''");
-                                    whereClause.append("`").append(key).append("`='").append(safeVal).append("'");
-                                } else {
-                                    whereClause.append("`").append(key).append("`=").append(fieldValue);
-                                }
-                            }
-                        }
+    private int getMaxRowsPerStatement(SinkRow.Kind kind) {
+        if (kind == SinkRow.Kind.UPDATE) {
+            // 各行变更列不同，UPDATE不合并为多行语句
+            return 1;
+        }
+        return kind == SinkRow.Kind.DELETE ? sinkOptions.getMaxDeleteBatch() : sinkOptions.getMaxRowsPerStatement();
+    }
 
-                        if (whereClause.length() == 0) {
-                            log.warn("无法生成有效的WHERE子句，跳过删除操作");
-                            return;
-                        }
+    /**
+     * 以一条多行语句写入多行：INSERT ... VALUES (...),(...) ON DUPLICATE KEY UPDATE 或 DELETE ... WHERE key IN (...)
+     */
+    private void executeMultiRow(Connection conn, List<SinkRow> rows) throws SQLException {
+        SinkRow first = rows.get(0);
+        String sql = templateCache.getMultiRowSql(first, rows.size(), rows.size() == getMaxRowsPerStatement(first.getKind()));
+        try (PreparedStatement stmt = clientPrepareStatement(conn, sql)) {
+            int offset = 0;
+            for (SinkRow row : rows) {
+                DbUtil.bindParams(stmt, row.getValues(), offset);
+                offset += row.getValues().size();
+            }
+            stmt.executeUpdate();
+        }
+        log.debug("表[{}]多行合并{}完成，行数: {}", first.getSourceTable(), first.getKind(), rows.size());
+    }
 
-                        sql = "DELETE FROM `" + targetDb + "`.`" + targetTable + "` WHERE " + whereClause;
-                    }
-                }
+    /**
+     * 多行合并语句的行数随批次变化、长度远超语句缓存上限，服务端预编译每次执行都要额外的prepare和close往返，
+     * 这里使用客户端预编译，一次往返发送完整语句；只含变更列的UPDATE按变更列组合有大量不同的语句，
+     * 同样使用客户端预编译，避免挤占连接的服务端语句缓存
+     */
+    private static PreparedStatement clientPrepareStatement(Connection conn, String sql) throws SQLException {
+        if (conn.isWrapperFor(JdbcConnection.class)) {
+            return conn.unwrap(JdbcConnection.class).clientPrepareStatement(sql);
+        }
+        return conn.prepareStatement(sql);
+    }
 
-                deleteCount.incrementAndGet();
-                // 更新表级别计数器
-                tableDeleteCount.computeIfAbsent(sourceTable, k -> new AtomicInteger(0)).incrementAndGet();
-            } else {
-                log.warn("未处理的操作类型: {}", op);
-                return;
+    /**
+     * 处理表结构变更：先写出该表的缓冲数据，再按策略在目标表执行改写后的DDL，最后使该表的元数据和SQL模板失效，
+     * 其他表不受影响；未知表的变更写出所有缓冲数据并使全部缓存失效。
+     * 表结构变更广播到每个Sink子任务，DDL只由0号子任务在所有子任务写出该表的数据后执行一次
+     *
+     * @param record 表结构变更记录
+     * @param eventOffset 事务模式下DDL的binlog位点，随下一批数据提交；其他模式为null
+     */
+    private void handleSchemaChange(ChangeRecord record, SinkOffset eventOffset) throws SQLException {
+        String sourceTable = getSourceTable(record);
+        String targetTable = StringUtils.isNotEmpty(sourceTable) ? getTargetTable(sourceTable) : null;
+        if (StringUtils.isEmpty(targetTable)) {
+            flushAll();
+            templateCache.invalidateAll();
+            if (metadataCache != null) {
+                metadataCache.refreshAll();
             }
+            log.info("任务[{}]收到表结构变更事件, 表: {}, DDL: {}", taskId, sourceTable, record.getDdl());
+            return;
+        }
 
-            // 执行SQL
-            if (StringUtils.isNotEmpty(sql)) {
-                log.info("执行SQL: {}", sql);
-                int result = 0;
+        flushTable(targetTable);
+        // 多个Sink子任务时每个子任务都会收到同一个表结构变更，都写出该表之前的数据后由0号子任务执行一次DDL
+        SchemaChangeBarrier barrier = subtaskCount > 1 ? SchemaChangeBarrier.get(taskId, record, subtaskCount) : null;
+        try {
+            if (barrier != null) {
+                barrier.arrive();
+            }
+            if (barrier == null || subtaskIndex == 0) {
                 try {
-                    // 使用目标数据库连接执行SQL
-                    if (targetDbUrl != null && targetDbUsername != null && targetDbPassword != null) {
-                        result = DbUtil.insertOrUpdateWithTargetDb(sql, targetDbUrl, targetDbUsername, targetDbPassword);
-                    } else {
-                        // 如果没有目标数据库连接信息，使用默认数据源
-                        log.warn("未配置目标数据库连接信息，使用默认数据源执行SQL");
-                        result = DbUtil.insertOrUpdate(sql);
+                    if (barrier != null) {
+                        barrier.awaitArrived();
                     }
-                    log.info("SQL执行结果: {}, 影响行数: {}", result > 0 ? "成功" : "失败", result);
-                } catch (Exception e) {
-                    log.error("执行SQL异常: {}，错误: {}", sql, e.getMessage(), e);
-                    errorCount.incrementAndGet();
-                    // 更新表级别计数器
-                    tableErrorCount.computeIfAbsent(sourceTable, k -> new AtomicInteger(0)).incrementAndGet();
-
-                    // 记录同步异常
-                    SyncException exception = new SyncException();
-                    exception.setTaskId(taskId);
-                    exception.setTableName(sourceTable);
-                    exception.setErrorMessage("执行SQL异常: " + e.getMessage() + "\nSQL: " + sql);
-                    exception.setErrorTime(new Date());
-
-                    // 使用DAO保存异常信息
-                    if (syncExceptionDao != null) {
-                        try {
-                            syncExceptionDao.insert(exception);
-                        } catch (Exception ex) {
-                            log.error("保存异常记录失败: {}", ex.getMessage(), ex);
-                        }
+                    applyDdl(record, sourceTable, targetTable);
+                } finally {
+                    if (barrier != null) {
+                        barrier.markApplied();
                     }
                 }
-
-                if (result <= 0) {
-                    log.error("执行SQL失败: {}", sql);
-                    errorCount.incrementAndGet();
-                    // 更新表级别计数器
-                    tableErrorCount.computeIfAbsent(sourceTable, k -> new AtomicInteger(0)).incrementAndGet();
-
-                    // 记录同步异常
-                    SyncException exception = new SyncException();
-                    exception.setTaskId(taskId);
-                    exception.setTableName(sourceTable);
-                    exception.setErrorMessage("执行SQL失败: " + sql);
-                    exception.setErrorTime(new Date());
-
-                    // 使用DAO保存异常信息
-                    if (syncExceptionDao != null) {
-                        try {
-                            syncExceptionDao.insert(exception);
-                        } catch (Exception ex) {
-                            log.error("保存异常记录失败: {}", ex.getMessage(), ex);
-                        }
-                    }
+            } else {
+                barrier.awaitApplied();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待表结构变更屏障被中断", e);
+        } finally {
+            if (barrier != null) {
+                barrier.leave();
+            }
+            templateCache.invalidate(targetTable);
+            if (metadataCache != null) {
+                metadataCache.refresh(targetTable);
+            }
+            if (eventOffset != null) {
+                synchronized (bufferLock) {
+                    pendingOffset = eventOffset;
                 }
             }
-        } catch (Exception e) {
-            log.error("处理CDC数据异常: {}, 原始数据: {}", e.getMessage(), value, e);
-            errorCount.incrementAndGet();
+        }
+    }
 
-            // 记录同步异常
-            SyncException exception = new SyncException();
-            exception.setTaskId(taskId);
-            exception.setErrorMessage("处理CDC数据异常: " + e.getMessage() + "\n原始数据: " + value);
-            exception.setErrorTime(new Date());
+    /**
+     * 按策略在目标表执行改写后的DDL
+     *
+     * @param record 表结构变更记录
+     * @param sourceTable 源表名
+     * @param targetTable 目标表名
+     */
+    private void applyDdl(ChangeRecord record, String sourceTable, String targetTable) throws SQLException {
+        String ddl = DdlRewriter.rewrite(record.getDdl(), sourceTable, targetDb, targetTable, sinkOptions.getSchemaChangePolicy());
+        if (ddl != null) {
+            executeDdl(ddl);
+            metrics().add(sourceTable, "ddlApplied", 1);
+            log.info("任务[{}]表[{}]结构变更已同步到目标表[{}]: {}", taskId, sourceTable, targetTable, ddl);
+        } else if (record.getDdl() != null) {
+            metrics().add(sourceTable, "ddlSkipped", 1);
+            log.warn("任务[{}]表[{}]结构变更未同步到目标表（策略: {}）: {}",
+                    taskId, sourceTable, sinkOptions.getSchemaChangePolicy(), record.getDdl());
+        }
+    }
 
-            // 使用DAO保存异常信息
-            if (syncExceptionDao != null) {
-                try {
-                    syncExceptionDao.insert(exception);
-                } catch (Exception ex) {
-                    log.error("保存异常记录失败: {}", ex.getMessage(), ex);
+    /**
+     * 写出单个目标表的缓冲数据（包括未导入的快照行）；事务模式下所有表在同一事务中提交，写出全部缓冲数据
+     *
+     * @param targetTable 目标表名
+     */
+    private void flushTable(String targetTable) {
+        if (bufferLock == null) {
+            return;
+        }
+        synchronized (bufferLock) {
+            if (bulkLoader != null) {
+                enqueueSnapshotRows(bulkLoader.finishSnapshot(targetTable));
+            }
+            if (sinkOptions.isTransactional()) {
+                flushTransactional();
+            } else {
+                TableBuffer buffer = buffers.get(targetTable);
+                if (buffer != null) {
+                    flushBuffer(buffer);
                 }
             }
         }
+        writePending();
+    }
+
+    /**
+     * 在目标库执行DDL
+     *
+     * @param ddl DDL语句
+     * @throws SQLException SQL异常
+     */
+    private void executeDdl(String ddl) throws SQLException {
+        if (targetDataSource != null) {
+            try (Connection conn = targetDataSource.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute(ddl);
+            }
+        } else if (targetDbUrl != null && targetDbUsername != null && targetDbPassword != null) {
+            try (Connection conn = DbUtil.getConnection(targetDbUrl, targetDbUsername, targetDbPassword);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute(ddl);
+            }
+        } else {
+            throw new SQLException("未配置目标数据库连接信息，无法执行DDL: " + ddl);
+        }
+    }
+
+    /**
+     * 启动按等待时间刷新缓冲区的调度任务
+     */
+    private void startLingerFlushTask() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("FlinkCDCSink-Flush-" + taskId);
+            return t;
+        });
+        long interval = Math.max(10, sinkOptions.getLingerMs() / 2);
+        flushScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (!closed) {
+                    flushExpired();
+                }
+            } catch (Throwable t) {
+                log.error("任务[{}]定时刷新缓冲区异常: {}", taskId, t.getMessage(), t);
+            }
+            if (asyncFlushException != null) {
+                // 事务提交已失败，停止定时刷新，由处理线程抛出异常使作业失败
+                log.warn("任务[{}]事务提交失败，停止定时刷新缓冲区", taskId);
+                flushScheduler.shutdown();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("任务[{}]已启用攒批写入, batchSize={}, batchBytes={}, lingerMs={}",
+                taskId, sinkOptions.getBatchSize(), sinkOptions.getBatchBytes(), sinkOptions.getLingerMs());
     }
 
     /**
@@ -565,6 +1561,7 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
 
                 // 保存额外信息到remark字段
                 JSONObject extraInfo = new JSONObject();
+                extraInfo.putAll(getTableExtraStats(tableName));
                 extraInfo.put("lastSyncTime", new Date().getTime());
                 stats.setRemark(extraInfo.toJSONString());
 
@@ -590,6 +1587,7 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
                 } catch (Exception e) {
                     log.warn("解析表[{}]额外信息异常，将重新创建", tableName);
                 }
+                extraInfo.putAll(getTableExtraStats(tableName));
                 extraInfo.put("lastSyncTime", new Date().getTime());
                 stats.setRemark(extraInfo.toJSONString());
 
@@ -605,6 +1603,16 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
     public void close() throws Exception {
         log.info(">>> [DEBUG] FlinkCDCSink close() 触发, taskId={}, 线程: {}", taskId, Thread.currentThread().getName());
         closed = true;
+        // 停止定时刷新并写出剩余缓冲数据
+        if (flushScheduler != null) {
+            flushScheduler.shutdownNow();
+            flushScheduler = null;
+        }
+        try {
+            flushAll();
+        } catch (Exception e) {
+            log.error("任务[{}]关闭时刷新缓冲区异常: {}", taskId, e.getMessage(), e);
+        }
         if (scheduler != null && !scheduler.isShutdown()) {
             try {
                 log.info("任务[{}]准备关闭，保存最终统计数据", taskId);
@@ -618,7 +1626,15 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
             }
             scheduler = null;
         }
+        // 释放目标数据库连接池
+        if (metrics != null) {
+            metrics.unregisterPool(subtaskIndex);
+        }
+        DbUtil.closeDataSource(targetDataSource);
+        targetDataSource = null;
         super.close();
+        CHECKPOINT_OFFSETS.remove(taskId);
+        SchemaChangeBarrier.clear(taskId);
         FlinkCDCSink oldInstance = INSTANCES.remove(taskId);
         log.info("从实例映射中移除任务[{}]: {}, 剩余实例: {}", taskId, oldInstance != null ? "成功" : "实例不存在", INSTANCES.keySet());
         log.info("关闭Flink CDC Sink，任务ID：{}", taskId);
@@ -631,26 +1647,36 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @return 目标表名
      */
     private String getTargetTable(String sourceTable) {
-        if (StringUtils.isEmpty(tableMapping)) {
-            log.info("没有表映射配置，使用源表名作为目标表名: {}", sourceTable);
-            return sourceTable; // 没有映射则默认使用相同表名
+        Map<String, String> mappings = targetTables;
+        if (mappings == null) {
+            mappings = parseTableMapping();
+            targetTables = mappings;
         }
+        // 没有映射则默认使用相同表名
+        String targetTable = mappings.get(sourceTable);
+        return StringUtils.isNotEmpty(targetTable) ? targetTable : sourceTable;
+    }
 
+    /**
+     * 解析表映射关系（源表 -> 目标表），只在首次使用时解析一次
+     */
+    private Map<String, String> parseTableMapping() {
+        Map<String, String> mappings = new HashMap<>();
+        if (StringUtils.isEmpty(tableMapping)) {
+            log.info("没有表映射配置，使用源表名作为目标表名");
+            return mappings;
+        }
         try {
-            JSONObject mappings = JSONObject.parseObject(tableMapping);
-            String targetTable = mappings.getString(sourceTable);
-            log.info("表映射结果: {}=>{}", sourceTable, targetTable);
-
-            if (StringUtils.isEmpty(targetTable)) {
-                log.info("在映射中未找到源表[{}]，使用源表名作为目标表名", sourceTable);
-                return sourceTable;
+            for (Map.Entry<String, Object> entry : JSONObject.parseObject(tableMapping).entrySet()) {
+                if (entry.getValue() != null) {
+                    mappings.put(entry.getKey(), entry.getValue().toString());
+                }
             }
-
-            return targetTable;
+            log.info("表映射关系: {}", mappings);
         } catch (Exception e) {
             log.error("解析表映射关系异常", e);
-            return sourceTable;
         }
+        return mappings;
     }
 
     /**
@@ -667,28 +1693,64 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * 获取插入计数
      */
     public int getInsertCount() {
-        return insertCount.get();
+        return metrics().getInsertCount();
     }
 
     /**
      * 获取更新计数
      */
     public int getUpdateCount() {
-        return updateCount.get();
+        return metrics().getUpdateCount();
     }
 
     /**
      * 获取删除计数
      */
     public int getDeleteCount() {
-        return deleteCount.get();
+        return metrics().getDeleteCount();
     }
 
     /**
      * 获取错误计数
      */
     public int getErrorCount() {
-        return errorCount.get();
+        return metrics().getErrorCount();
+    }
+
+    /**
+     * 获取目标库写入限流累计等待时间（毫秒）
+     */
+    public long getThrottleMillis() {
+        return metrics().getThrottleMillis();
+    }
+
+    /**
+     * 获取目标库连接池统计信息
+     *
+     * @return 连接池统计（最大连接数、活跃数、空闲数、等待次数、累计等待耗时）
+     */
+    public Map<String, Object> getPoolStats() {
+        return metrics().getPoolStats();
+    }
+
+    /**
+     * 获取指定表的扩展统计信息（保存在统计表的remark字段中）
+     *
+     * @param tableName 表名
+     * @return 扩展统计信息
+     */
+    public Map<String, Object> getTableExtraStats(String tableName) {
+        return metrics().getTableCounters(tableName);
+    }
+
+    /**
+     * 获取任务级统计（客户端持有的Sink对象同样可以读取运行中子任务的统计）
+     */
+    private SinkMetrics metrics() {
+        if (metrics == null) {
+            metrics = SinkMetrics.get(taskId);
+        }
+        return metrics;
     }
 
     /**
@@ -698,8 +1760,7 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @return 插入记录数
      */
     public int getInsertCount(String tableName) {
-        AtomicInteger counter = tableInsertCount.get(tableName);
-        return counter != null ? counter.get() : 0;
+        return metrics().getInsertCount(tableName);
     }
 
     /**
@@ -709,8 +1770,7 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @return 更新记录数
      */
     public int getUpdateCount(String tableName) {
-        AtomicInteger counter = tableUpdateCount.get(tableName);
-        return counter != null ? counter.get() : 0;
+        return metrics().getUpdateCount(tableName);
     }
 
     /**
@@ -720,8 +1780,7 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @return 删除记录数
      */
     public int getDeleteCount(String tableName) {
-        AtomicInteger counter = tableDeleteCount.get(tableName);
-        return counter != null ? counter.get() : 0;
+        return metrics().getDeleteCount(tableName);
     }
 
     /**
@@ -731,77 +1790,259 @@ public class FlinkCDCSink extends RichSinkFunction<String> {
      * @return 错误记录数
      */
     public int getErrorCount(String tableName) {
-        AtomicInteger counter = tableErrorCount.get(tableName);
-        return counter != null ? counter.get() : 0;
+        return metrics().getErrorCount(tableName);
     }
 
     /**
-     * 尝试从CDC事件中提取主键值
+     * 获取行主键：优先使用目标表的主键或唯一键，其次CDC事件中的主键(key)，否则使用id字段
      *
-     * @param obj CDC事件对象
-     * @param payload 可选的payload对象
-     * @return 主键名和值的映射
+     * @param record CDC事件
+     * @param metadata 目标表元数据，可为null
+     * @param image 行数据
+     * @return 主键值，无法确定时返回null
+     */
+    private static Object getRowKey(ChangeRecord record, TableMetadataCache.TableMetadata metadata, Map<String, Object> image) {
+        if (metadata != null) {
+            List<Object> rowKey = metadata.keyOf(image);
+            if (rowKey != null) {
+                return rowKey;
+            }
+        }
+        List<Object> key = record.getKeyList();
+        if (key != null) {
+            return key;
+        }
+        return image.get("id");
+    }
+
+    /**
+     * 比较更新前后的数据，返回目标表中存在且值发生变化的列
      */
-    private Map<String, Object> extractPrimaryKeyValues(JSONObject obj, JSONObject payload) {
-        Map<String, Object> keyMap = new HashMap<>();
+    private static Set<String> getChangedColumns(TableMetadataCache.TableMetadata metadata, Map<String, Object> before, Map<String, Object> after) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            String column = entry.getKey();
+            if (!metadata.hasColumn(column)) {
+                continue;
+            }
+            Object oldValue = before.get(column);
+            Object newValue = entry.getValue();
+            boolean equal = oldValue instanceof byte[] && newValue instanceof byte[]
+                    ? Arrays.equals((byte[]) oldValue, (byte[]) newValue)
+                    : Objects.equals(oldValue, newValue);
+            if (!equal) {
+                changed.add(column);
+            }
+        }
+        return changed;
+    }
 
-        // 方法1：尝试从主键字段获取
-        if (obj.containsKey("key")) {
-            Object keyObj = obj.get("key");
-            if (keyObj instanceof JSONObject) {
-                JSONObject key = (JSONObject) keyObj;
-                if (!key.isEmpty()) {
-                    return key;
-                }
+    /**
+     * 将upsert转换为只更新变更列的UPDATE，条件使用更新前的主键值；
+     * 主键本身发生变化时不参与缓冲区合并，保持原有顺序写入
+     */
+    private static SinkRow toUpdateRow(SinkRow upsert, TableMetadataCache.TableMetadata metadata, Map<String, Object> before,
+                                       List<String> keyColumns, Set<String> changedColumns) {
+        List<String> columns = new ArrayList<>(changedColumns.size());
+        List<Object> values = new ArrayList<>(changedColumns.size() + keyColumns.size());
+        for (int i = 0; i < upsert.getColumns().size(); i++) {
+            if (changedColumns.contains(upsert.getColumns().get(i))) {
+                columns.add(upsert.getColumns().get(i));
+                values.add(upsert.getValues().get(i));
             }
         }
+        boolean keyChanged = false;
+        for (String column : keyColumns) {
+            values.add(convertKeyValue(metadata, column, before.get(column)));
+            keyChanged |= changedColumns.contains(column);
+        }
+        return new SinkRow(upsert.getSourceTable(), upsert.getTargetTable(), keyChanged ? null : upsert.getKey(),
+                columns, keyColumns, values, upsert);
+    }
 
-        // 方法2：尝试从payload中的primaryKey部分获取
-        if (payload != null && payload.containsKey("primaryKey")) {
-            Object pkObj = payload.get("primaryKey");
-            if (pkObj instanceof JSONObject) {
-                JSONObject pk = (JSONObject) pkObj;
-                if (!pk.isEmpty()) {
-                    return pk;
-                }
+    /**
+     * 条件列的值与写入值使用相同的日期时间转换
+     */
+    private static Object convertKeyValue(TableMetadataCache.TableMetadata metadata, String column, Object value) {
+        return value != null && isTemporalColumn(metadata, column) ? convertTemporalValue(metadata, column, value) : value;
+    }
+
+    /**
+     * 是否按日期时间类型处理：有目标表元数据时按列类型判断，否则按列名推断
+     */
+    private static boolean isTemporalColumn(TableMetadataCache.TableMetadata metadata, String key) {
+        return metadata != null ? metadata.isTemporal(key)
+                : key.endsWith("_time") || key.endsWith("_date") || key.equals("create_time") || key.equals("update_time");
+    }
+
+    /**
+     * 将日期时间列的值转换为目标库可接受的类型
+     * Source端已按Debezium逻辑类型转换为LocalDate/LocalDateTime，直接作为参数绑定；
+     * 其余类型（字符串、未标记逻辑类型的纪元时间）按旧格式兼容处理
+     *
+     * @param metadata 目标表元数据，可为null
+     * @param key 列名
+     * @param valObj 原始值
+     * @return 转换后的值
+     */
+    private static Object convertTemporalValue(TableMetadataCache.TableMetadata metadata, String key, Object valObj) {
+        // 1. 已转换的日期时间对象
+        if (valObj instanceof TemporalAccessor) {
+            return valObj;
+        }
+        // 2. 处理字符串类型
+        if (valObj instanceof String) {
+            String val = valObj.toString().trim();
+            if (val.isEmpty() || "null".equalsIgnoreCase(val)) {
+                valObj = null;
+            } else if (val.contains("T")) {
+                // 处理ISO格式
+                val = val.replace("T", " ").replace("Z", "");
+                valObj = val;
+            } else if (val.matches("\\d{4}[-/]\\d{2}[-/]\\d{2}.*")) {
+                // 处理 yyyy-MM-dd HH:mm:ss 或 yyyy/MM/dd HH:mm:ss
+                val = val.replace("/", "-");
+                valObj = val;
+            }
+        }
+        // 3. date列的整数值为距1970-01-01的天数
+        else if (valObj instanceof Integer && metadata != null && "date".equals(metadata.getColumnType(key))) {
+            valObj = LocalDate.ofEpochDay((Integer) valObj);
+        }
+        // 4. 处理毫秒时间戳
+        else if (valObj instanceof Long || valObj instanceof Integer) {
+            valObj = LocalDateTime.ofInstant(Instant.ofEpochMilli(((Number) valObj).longValue()), DEFAULT_ZONE);
+        }
+        // 5. 处理其他类型（如 java.util.Date）
+        else if (valObj instanceof Date) {
+            valObj = LocalDateTime.ofInstant(((Date) valObj).toInstant(), DEFAULT_ZONE);
+        }
+        return valObj;
+    }
+
+    /**
+     * 获取写入列：有目标表元数据时按目标表列顺序排列（同一张表生成相同的SQL模板），
+     * 目标表中不存在的列追加在后面，写入时由目标库报错
+     *
+     * @param metadata 目标表元数据，可为null
+     * @param image 行数据
+     * @return 列名
+     */
+    private static List<String> getOrderedColumns(TableMetadataCache.TableMetadata metadata, Map<String, Object> image) {
+        if (metadata == null) {
+            return new ArrayList<>(image.keySet());
+        }
+        List<String> columns = new ArrayList<>(image.size());
+        for (String column : metadata.getColumns()) {
+            if (image.containsKey(column)) {
+                columns.add(column);
+            }
+        }
+        for (String column : image.keySet()) {
+            if (!metadata.hasColumn(column)) {
+                columns.add(column);
             }
         }
+        return columns;
+    }
 
-        // 方法3：查找source中的主键信息
-        if (obj.containsKey("source")) {
-            JSONObject source = obj.getJSONObject("source");
-            if (source.containsKey("primary_keys")) {
-                Object pksObj = source.get("primary_keys");
-                if (pksObj instanceof JSONArray) {
-                    JSONArray pks = (JSONArray) pksObj;
-                    // 如果有主键但没有值，尝试获取主键字段名
-                    for (int i = 0; i < pks.size(); i++) {
-                        String pkName = pks.getString(i);
-                        // 尝试从after或before中获取这个字段的值
-                        Object pkValue = null;
+    /**
+     * 从缓冲区取出、等待写入的一批数据
+     */
+    private static class FlushBatch {
+        private final TableBuffer buffer;
+        private final List<SinkRow> rows;
+        private final long bytes;
+
+        FlushBatch(TableBuffer buffer, List<SinkRow> rows, long bytes) {
+            this.buffer = buffer;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
 
-                        if (obj.containsKey("after")) {
-                            JSONObject after = obj.getJSONObject("after");
-                            if (after != null && after.containsKey(pkName)) {
-                                pkValue = after.get(pkName);
-                            }
-                        }
+    /**
+     * 单个目标表的攒批缓冲区
+     * 启用合并时按主键只保留每行的最终变更：多次更新保留最后的镜像，最后为删除时只保留删除。
+     * 源端至少一次投递（重启后重放），窗口内的插入可能已在重启前写入目标表，因此先插入后删除不能相互抵消，
+     * 仍写出删除（删除是幂等的）
+     */
+    private static class TableBuffer {
+        private final String sourceTable;
+        // 自适应批次控制
+        private final AdaptiveBatchController controller;
+        private Map<Object, SinkRow> rows = new LinkedHashMap<>();
+        // 主键未知的行数
+        private int keylessCount;
+        private long bytes;
+        private long firstTime;
+
+        TableBuffer(String sourceTable, AdaptiveBatchController controller) {
+            this.sourceTable = sourceTable;
+            this.controller = controller;
+        }
 
-                        if (pkValue == null && obj.containsKey("before")) {
-                            JSONObject before = obj.getJSONObject("before");
-                            if (before != null && before.containsKey(pkName)) {
-                                pkValue = before.get(pkName);
-                            }
-                        }
+        /**
+         * 写入一行变更
+         *
+         * @return 被合并掉的变更数
+         */
+        int add(SinkRow row, boolean compaction) {
+            if (rows.isEmpty()) {
+                firstTime = System.currentTimeMillis();
+            }
+            // 未启用合并或主键未知时，每行单独保留
+            if (row.getKey() == null) {
+                keylessCount++;
+            }
+            Object key = compaction && row.getKey() != null ? row.getKey() : new Object();
+            // 先移除再写入，使该行按最近一次变更排序
+            SinkRow previous = rows.remove(key);
+            int compacted = 0;
+            if (previous != null && row.getKind() == SinkRow.Kind.UPDATE) {
+                // 只含变更列的UPDATE不能覆盖之前的变更，改用完整镜像
+                row = row.getFallback();
+            }
+            if (previous != null) {
+                bytes -= previous.getBytes();
+                compacted = 1;
+            }
+            rows.put(key, row);
+            bytes += row.getBytes();
+            return compacted;
+        }
 
-                        if (pkValue != null) {
-                            keyMap.put(pkName, pkValue);
-                        }
-                    }
+        int size() {
+            return rows.size();
+        }
+
+        /**
+         * 取出待写入的行。按主键合并后每个主键只剩一行，删除先于upsert写出不会改变结果，
+         * 还能让删除合并为IN语句并避免唯一键冲突；存在主键未知的行时保持原顺序
+         */
+        List<SinkRow> drain(boolean compaction) {
+            List<SinkRow> result = new ArrayList<>(rows.size());
+            if (!compaction || keylessCount > 0) {
+                result.addAll(rows.values());
+                return result;
+            }
+            for (SinkRow row : rows.values()) {
+                if (row.getKind() == SinkRow.Kind.DELETE) {
+                    result.add(row);
+                }
+            }
+            for (SinkRow row : rows.values()) {
+                if (row.getKind() != SinkRow.Kind.DELETE) {
+                    result.add(row);
                 }
             }
+            return result;
         }
 
-        return keyMap;
+        void reset() {
+            rows = new LinkedHashMap<>();
+            keylessCount = 0;
+            bytes = 0;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,647 @@
+package com.yxq.task.flink;
+
+import io.debezium.time.MicroTime;
+import io.debezium.time.MicroTimestamp;
+import io.debezium.time.NanoTime;
+import io.debezium.time.NanoTimestamp;
+import io.debezium.time.ZonedTimestamp;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 行过滤条件
+ * 表配置中的filter表达式在任务启动时编译一次，直接在Debezium的Struct上求值，不满足条件的行在反序列化阶段丢弃，例如：
+ * tenant_id IN (1, 2, 3) AND status <> 'ARCHIVED'
+ * 支持 = != <> < <= > >=、[NOT] IN (...)、IS [NOT] NULL、AND、OR、NOT和括号，按SQL三值逻辑处理NULL；
+ * 字符串不区分大小写比较（对应MySQL默认的_ci排序规则，不忽略重音和尾部空格）；
+ * 日期时间列与字符串常量比较时，常量按列的Debezium逻辑类型转换后比较，如 created_at >= '2024-01-01 08:00:00'，
+ * DATE/DATETIME常量按字面时间，TIMESTAMP常量按源库时区解释，TIME常量格式为'HH:mm:ss[.ffffff]'；
+ * 引用的列在表中不存在或日期时间常量格式错误时抛出异常使任务失败，不会静默过滤掉所有行
+ */
+public class RowFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String expression;
+    private final Node root;
+    private final Set<String> columns;
+
+    // 已校验过列的行Schema（同一版本的表结构共用同一个Schema对象）
+    private transient volatile Schema checkedSchema;
+
+    private RowFilter(String expression, Node root, Set<String> columns) {
+        this.expression = expression;
+        this.root = root;
+        this.columns = Collections.unmodifiableSet(columns);
+    }
+
+    /**
+     * 编译过滤表达式
+     *
+     * @param expression 过滤表达式
+     * @return 行过滤条件
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static RowFilter compile(String expression) {
+        Parser parser = new Parser(expression);
+        Node root = parser.parseExpression();
+        if (parser.peek() != null) {
+            throw parser.error("多余的内容");
+        }
+        return new RowFilter(expression, root, parser.columns);
+    }
+
+    /**
+     * 行是否满足过滤条件，条件结果为NULL时视为不满足
+     *
+     * @param row 行数据
+     * @param serverZone 源库时区，用于解释与TIMESTAMP列比较的常量
+     * @throws IllegalArgumentException 引用的列不存在或日期时间常量格式错误
+     */
+    public boolean test(Struct row, ZoneId serverZone) {
+        if (row == null) {
+            return false;
+        }
+        checkColumns(row.schema());
+        return Boolean.TRUE.equals(root.eval(row, serverZone));
+    }
+
+    /**
+     * 校验表达式引用的列都在行Schema中，每个Schema只校验一次
+     */
+    private void checkColumns(Schema schema) {
+        if (schema == checkedSchema) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String column : columns) {
+            if (schema.field(column) == null) {
+                missing.add(column);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("过滤条件[" + expression + "]引用的列在表中不存在: " + missing);
+        }
+        checkedSchema = schema;
+    }
+
+    /**
+     * 表达式引用的列
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * 表达式节点，求值结果为null表示SQL中的UNKNOWN
+     */
+    private interface Node extends Serializable {
+        Boolean eval(Struct row, ZoneId zone);
+    }
+
+    private static class And implements Node {
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Boolean l = left.eval(row, zone);
+            if (Boolean.FALSE.equals(l)) {
+                return false;
+            }
+            Boolean r = right.eval(row, zone);
+            if (Boolean.FALSE.equals(r)) {
+                return false;
+            }
+            return l == null || r == null ? null : true;
+        }
+    }
+
+    private static class Or implements Node {
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Boolean l = left.eval(row, zone);
+            if (Boolean.TRUE.equals(l)) {
+                return true;
+            }
+            Boolean r = right.eval(row, zone);
+            if (Boolean.TRUE.equals(r)) {
+                return true;
+            }
+            return l == null || r == null ? null : false;
+        }
+    }
+
+    private static class Not implements Node {
+        private final Node node;
+
+        Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Boolean value = node.eval(row, zone);
+            return value == null ? null : !value;
+        }
+    }
+
+    private static class IsNull implements Node {
+        private final String column;
+        private final boolean negated;
+
+        IsNull(String column, boolean negated) {
+            this.column = column;
+            this.negated = negated;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Field field = row.schema().field(column);
+            return (row.get(field) == null) != negated;
+        }
+    }
+
+    private static class Compare implements Node {
+        private final String column;
+        private final String op;
+        private final Literal literal;
+
+        Compare(String column, String op, Literal literal) {
+            this.column = column;
+            this.op = op;
+            this.literal = literal;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Field field = row.schema().field(column);
+            Integer cmp = literal.compare(field, row.get(field), zone);
+            if (cmp == null) {
+                return null;
+            }
+            switch (op) {
+                case "=":
+                    return cmp == 0;
+                case "!=":
+                case "<>":
+                    return cmp != 0;
+                case "<":
+                    return cmp < 0;
+                case "<=":
+                    return cmp <= 0;
+                case ">":
+                    return cmp > 0;
+                default:
+                    return cmp >= 0;
+            }
+        }
+    }
+
+    private static class In implements Node {
+        private final String column;
+        private final List<Literal> literals;
+        private final boolean negated;
+
+        In(String column, List<Literal> literals, boolean negated) {
+            this.column = column;
+            this.literals = literals;
+            this.negated = negated;
+        }
+
+        @Override
+        public Boolean eval(Struct row, ZoneId zone) {
+            Field field = row.schema().field(column);
+            Object value = row.get(field);
+            boolean unknown = false;
+            for (Literal literal : literals) {
+                Integer cmp = literal.compare(field, value, zone);
+                if (cmp == null) {
+                    unknown = true;
+                } else if (cmp == 0) {
+                    return !negated;
+                }
+            }
+            return unknown ? null : negated;
+        }
+    }
+
+    /**
+     * 常量：数值常量同时保存long值，整数列比较时不需要创建对象
+     */
+    private static class Literal implements Serializable {
+        private final String text;
+        private final BigDecimal number;
+        private final boolean isLong;
+        private final long longValue;
+
+        // 字符串常量按日期时间列的逻辑类型转换后的值：逻辑类型 -> {纪元秒, 纳秒}或{TIME纳秒数}
+        private transient volatile Map<String, long[]> temporalValues;
+
+        Literal(String text, BigDecimal number) {
+            this.text = text;
+            this.number = number;
+            long value = 0;
+            boolean exact = false;
+            if (number != null) {
+                try {
+                    value = number.longValueExact();
+                    exact = true;
+                } catch (ArithmeticException e) {
+                    // 小数或超出long范围，按BigDecimal比较
+                }
+            }
+            this.isLong = exact;
+            this.longValue = value;
+        }
+
+        /**
+         * 比较列值与常量
+         *
+         * @param field 列
+         * @param value 列值
+         * @param zone 源库时区
+         * @return 列值小于、等于、大于常量时分别返回负数、0、正数，无法比较（含NULL）时返回null
+         */
+        Integer compare(Field field, Object value, ZoneId zone) {
+            if (value == null) {
+                return null;
+            }
+            String logicalName = field.schema().name();
+            if (text != null && logicalName != null) {
+                Integer cmp = compareTemporal(logicalName, value, zone);
+                if (cmp != null) {
+                    return cmp;
+                }
+            }
+            if (value instanceof Boolean) {
+                value = (Boolean) value ? 1 : 0;
+            }
+            if (value instanceof Number) {
+                if (number == null) {
+                    return null;
+                }
+                if (isLong && (value instanceof Long || value instanceof Integer
+                        || value instanceof Short || value instanceof Byte)) {
+                    return Long.compare(((Number) value).longValue(), longValue);
+                }
+                BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : toDecimal(value.toString());
+                return decimal != null ? decimal.compareTo(number) : null;
+            }
+            if (value instanceof String) {
+                if (text != null) {
+                    return ((String) value).compareToIgnoreCase(text);
+                }
+                BigDecimal decimal = toDecimal((String) value);
+                return decimal != null ? decimal.compareTo(number) : null;
+            }
+            return null;
+        }
+
+        /**
+         * 按Debezium逻辑类型比较日期时间列与字符串常量
+         *
+         * @return 比较结果，列不是日期时间类型时返回null
+         */
+        private Integer compareTemporal(String logicalName, Object value, ZoneId zone) {
+            long seconds;
+            long nanos;
+            switch (logicalName) {
+                case io.debezium.time.Date.SCHEMA_NAME:
+                    seconds = ((Number) value).longValue() * 86400;
+                    nanos = 0;
+                    break;
+                case io.debezium.time.Timestamp.SCHEMA_NAME:
+                    return compareEpoch(((Number) value).longValue(), 1_000L, temporalValue(logicalName, zone));
+                case MicroTimestamp.SCHEMA_NAME:
+                    return compareEpoch(((Number) value).longValue(), 1_000_000L, temporalValue(logicalName, zone));
+                case NanoTimestamp.SCHEMA_NAME:
+                    return compareEpoch(((Number) value).longValue(), 1_000_000_000L, temporalValue(logicalName, zone));
+                case org.apache.kafka.connect.data.Date.LOGICAL_NAME:
+                case org.apache.kafka.connect.data.Timestamp.LOGICAL_NAME:
+                    return compareEpoch(((Date) value).getTime(), 1_000L, temporalValue(logicalName, zone));
+                case ZonedTimestamp.SCHEMA_NAME:
+                    Instant instant = OffsetDateTime.parse((String) value).toInstant();
+                    seconds = instant.getEpochSecond();
+                    nanos = instant.getNano();
+                    break;
+                case io.debezium.time.Time.SCHEMA_NAME:
+                    return Long.compare(((Number) value).longValue() * 1_000_000L, temporalValue(logicalName, zone)[0]);
+                case MicroTime.SCHEMA_NAME:
+                    return Long.compare(((Number) value).longValue() * 1_000L, temporalValue(logicalName, zone)[0]);
+                case NanoTime.SCHEMA_NAME:
+                    return Long.compare(((Number) value).longValue(), temporalValue(logicalName, zone)[0]);
+                case org.apache.kafka.connect.data.Time.LOGICAL_NAME:
+                    return Long.compare(((Date) value).getTime() * 1_000_000L, temporalValue(logicalName, zone)[0]);
+                default:
+                    return null;
+            }
+            long[] literal = temporalValue(logicalName, zone);
+            int cmp = Long.compare(seconds, literal[0]);
+            return cmp != 0 ? cmp : Long.compare(nanos, literal[1]);
+        }
+
+        private static int compareEpoch(long value, long unitsPerSecond, long[] literal) {
+            int cmp = Long.compare(Math.floorDiv(value, unitsPerSecond), literal[0]);
+            return cmp != 0 ? cmp : Long.compare(Math.floorMod(value, unitsPerSecond) * (1_000_000_000L / unitsPerSecond), literal[1]);
+        }
+
+        /**
+         * 常量按逻辑类型转换后的值，首次比较时转换并缓存
+         */
+        private long[] temporalValue(String logicalName, ZoneId zone) {
+            Map<String, long[]> values = temporalValues;
+            if (values == null) {
+                values = new ConcurrentHashMap<>();
+                temporalValues = values;
+            }
+            return values.computeIfAbsent(logicalName, k -> parseTemporal(k, zone));
+        }
+
+        private long[] parseTemporal(String logicalName, ZoneId zone) {
+            try {
+                switch (logicalName) {
+                    case io.debezium.time.Time.SCHEMA_NAME:
+                    case MicroTime.SCHEMA_NAME:
+                    case NanoTime.SCHEMA_NAME:
+                    case org.apache.kafka.connect.data.Time.LOGICAL_NAME:
+                        return new long[]{parseTimeNanos(text.trim())};
+                    case ZonedTimestamp.SCHEMA_NAME:
+                        Instant instant = parseDateTime(text.trim()).atZone(zone).toInstant();
+                        return new long[]{instant.getEpochSecond(), instant.getNano()};
+                    default:
+                        LocalDateTime dateTime = parseDateTime(text.trim());
+                        return new long[]{dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano()};
+                }
+            } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("过滤条件常量'" + text + "'不是有效的日期时间: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * 解析'yyyy-MM-dd'或'yyyy-MM-dd HH:mm:ss[.ffffff]'
+         */
+        private static LocalDateTime parseDateTime(String value) {
+            if (value.length() <= 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        }
+
+        /**
+         * 解析MySQL的TIME文本为纳秒数，支持负数和超过24小时
+         */
+        private static long parseTimeNanos(String value) {
+            boolean negative = value.startsWith("-");
+            String[] parts = (negative ? value.substring(1) : value).split(":");
+            BigDecimal seconds = new BigDecimal(parts[2]);
+            long nanos = (Long.parseLong(parts[0]) * 3600 + Long.parseLong(parts[1]) * 60) * 1_000_000_000L
+                    + seconds.movePointRight(9).longValue();
+            return negative ? -nanos : nanos;
+        }
+
+        private static BigDecimal toDecimal(String value) {
+            try {
+                return new BigDecimal(value.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 递归下降解析：
+     * expr := and (OR and)*
+     * and := unary (AND unary)*
+     * unary := NOT unary | '(' expr ')' | predicate
+     * predicate := column (op literal | [NOT] IN '(' literal (',' literal)* ')' | IS [NOT] NULL)
+     */
+    private static class Parser {
+        private final String input;
+        private final List<String> tokens;
+        private int index;
+        private final Set<String> columns = new LinkedHashSet<>();
+
+        Parser(String input) {
+            this.input = input;
+            this.tokens = tokenize(input);
+        }
+
+        Node parseExpression() {
+            Node node = parseAnd();
+            while (acceptKeyword("OR")) {
+                node = new Or(node, parseAnd());
+            }
+            return node;
+        }
+
+        private Node parseAnd() {
+            Node node = parseUnary();
+            while (acceptKeyword("AND")) {
+                node = new And(node, parseUnary());
+            }
+            return node;
+        }
+
+        private Node parseUnary() {
+            if (acceptKeyword("NOT")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Node node = parseExpression();
+                expect(")");
+                return node;
+            }
+            return parsePredicate();
+        }
+
+        private Node parsePredicate() {
+            String column = parseColumn();
+            if (acceptKeyword("IS")) {
+                boolean negated = acceptKeyword("NOT");
+                if (!acceptKeyword("NULL")) {
+                    throw error("IS后应为NULL或NOT NULL");
+                }
+                return new IsNull(column, negated);
+            }
+            boolean negated = acceptKeyword("NOT");
+            if (acceptKeyword("IN")) {
+                expect("(");
+                List<Literal> literals = new ArrayList<>();
+                do {
+                    literals.add(parseLiteral());
+                } while (accept(","));
+                expect(")");
+                return new In(column, literals, negated);
+            }
+            if (negated) {
+                throw error("NOT后应为IN");
+            }
+            String op = next();
+            if (op == null || !("=".equals(op) || "!=".equals(op) || "<>".equals(op) || "<".equals(op)
+                    || "<=".equals(op) || ">".equals(op) || ">=".equals(op))) {
+                throw error("不支持的运算符: " + op);
+            }
+            return new Compare(column, op, parseLiteral());
+        }
+
+        private String parseColumn() {
+            String token = next();
+            if (token == null) {
+                throw error("缺少列名");
+            }
+            String column;
+            if (token.startsWith("`")) {
+                column = token.substring(1, token.length() - 1);
+            } else if (Character.isLetter(token.charAt(0)) || token.charAt(0) == '_') {
+                column = token;
+            } else {
+                throw error("应为列名: " + token);
+            }
+            columns.add(column);
+            return column;
+        }
+
+        private Literal parseLiteral() {
+            String token = next();
+            if (token == null) {
+                throw error("缺少常量");
+            }
+            if (token.startsWith("'")) {
+                return new Literal(token.substring(1, token.length() - 1).replace("''", "'"), null);
+            }
+            if ("TRUE".equalsIgnoreCase(token)) {
+                return new Literal(null, BigDecimal.ONE);
+            }
+            if ("FALSE".equalsIgnoreCase(token)) {
+                return new Literal(null, BigDecimal.ZERO);
+            }
+            try {
+                return new Literal(null, new BigDecimal(token));
+            } catch (NumberFormatException e) {
+                throw error("应为常量: " + token);
+            }
+        }
+
+        private String peek() {
+            return index < tokens.size() ? tokens.get(index) : null;
+        }
+
+        private String next() {
+            return index < tokens.size() ? tokens.get(index++) : null;
+        }
+
+        private boolean accept(String token) {
+            if (token.equals(peek())) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (keyword.equalsIgnoreCase(peek())) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("缺少" + token);
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("过滤条件[" + input + "]第" + (index + 1) + "个词附近语法错误: " + message);
+        }
+
+        private static List<String> tokenize(String input) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < input.length()) {
+                char c = input.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '\'' || c == '`') {
+                    // 字符串常量和反引号列名，字符串中的''表示单引号
+                    int end = i + 1;
+                    while (true) {
+                        end = input.indexOf(c, end);
+                        if (end < 0) {
+                            throw new IllegalArgumentException("过滤条件[" + input + "]引号未闭合");
+                        }
+                        if (c == '\'' && end + 1 < input.length() && input.charAt(end + 1) == '\'') {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    tokens.add(input.substring(i, end + 1));
+                    i = end + 1;
+                } else if (c == '(' || c == ')' || c == ',' || c == '=') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '<' || c == '>' || c == '!') {
+                    if (i + 1 < input.length() && (input.charAt(i + 1) == '=' || (c == '<' && input.charAt(i + 1) == '>'))) {
+                        tokens.add(input.substring(i, i + 2));
+                        i += 2;
+                    } else {
+                        tokens.add(String.valueOf(c));
+                        i++;
+                    }
+                } else {
+                    int start = i;
+                    while (i < input.length() && (Character.isLetterOrDigit(input.charAt(i))
+                            || input.charAt(i) == '_' || input.charAt(i) == '.'
+                            || (i == start && (input.charAt(i) == '-' || input.charAt(i) == '+')))) {
+                        i++;
+                    }
+                    if (i == start) {
+                        throw new IllegalArgumentException("过滤条件[" + input + "]包含非法字符: " + c);
+                    }
+                    tokens.add(input.substring(start, i));
+                }
+            }
+            return tokens;
+        }
+    }
+}
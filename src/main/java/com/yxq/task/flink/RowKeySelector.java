@@ -0,0 +1,29 @@
+package com.yxq.task.flink;
+
+import org.apache.flink.api.java.functions.KeySelector;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * CDC事件分区键：表序号 + 主键
+ * 同一行的变更总是路由到同一个Sink子任务，保证按顺序写入；主键未知时按表分区
+ */
+public class RowKeySelector implements KeySelector<ChangeRecord, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String getKey(ChangeRecord record) throws Exception {
+        String key;
+        if (record.getKeyValues() != null && record.getKeyValues().length > 0) {
+            // deepToString按内容输出byte[]，保证不同JVM中分区一致
+            key = Arrays.deepToString(record.getKeyValues());
+        } else {
+            Map<String, Object> image = record.getAfter() != null ? record.getAfterImage() : record.getBeforeImage();
+            Object id = image != null ? image.get("id") : null;
+            key = id != null ? id.toString() : null;
+        }
+        return key != null ? record.getTable() + "|" + key : String.valueOf(record.getTable());
+    }
+}
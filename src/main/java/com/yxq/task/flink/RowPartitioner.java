@@ -0,0 +1,71 @@
+package com.yxq.task.flink;
+
+import org.apache.flink.api.common.functions.FlatMapFunction;
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.util.Collector;
+
+/**
+ * Sink并行写入的分区方式
+ * 行变更按（表，主键）分区，同一行的变更总是由同一个Sink子任务按顺序处理；
+ * 表结构变更复制到每个Sink子任务，与行变更走同一条通道，各子任务都能在DDL之前写出该表之前的数据并刷新缓存
+ */
+public class RowPartitioner implements Partitioner<ChangeRecord> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowKeySelector keySelector = new RowKeySelector();
+
+    /**
+     * 对CDC事件流分区
+     *
+     * @param input CDC事件流
+     * @param parallelism Sink并行度
+     * @return 分区后的事件流
+     */
+    public static DataStream<ChangeRecord> partition(DataStream<ChangeRecord> input, int parallelism) {
+        // 与上游同并行度，链接在读取算子之后，不改变事件顺序
+        return input.flatMap(new SchemaChangeBroadcast(parallelism))
+                .returns(ChangeRecordTypeInfo.INSTANCE)
+                .setParallelism(input.getParallelism())
+                .name("SchemaChangeBroadcast")
+                .partitionCustom(new RowPartitioner(), record -> record);
+    }
+
+    @Override
+    public int partition(ChangeRecord record, int numPartitions) {
+        if (record.getPartition() >= 0) {
+            return record.getPartition() % numPartitions;
+        }
+        try {
+            return Math.floorMod(keySelector.getKey(record).hashCode(), numPartitions);
+        } catch (Exception e) {
+            throw new IllegalStateException("计算CDC事件分区失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把表结构变更复制为每个Sink子任务一份，其余事件原样输出
+     */
+    private static class SchemaChangeBroadcast implements FlatMapFunction<ChangeRecord, ChangeRecord> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int parallelism;
+
+        SchemaChangeBroadcast(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public void flatMap(ChangeRecord record, Collector<ChangeRecord> out) {
+            if (!record.isSchemaChange()) {
+                out.collect(record);
+                return;
+            }
+            for (int i = 0; i < parallelism; i++) {
+                out.collect(record.withPartition(i));
+            }
+        }
+    }
+}
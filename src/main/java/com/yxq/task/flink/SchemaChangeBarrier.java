@@ -0,0 +1,98 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行Sink子任务之间的表结构变更屏障（本地模式下同一任务的所有子任务在同一进程中）
+ * 表结构变更广播到每个子任务：各子任务写出该表之前的数据后到达屏障，0号子任务等所有子任务到达后执行一次DDL，
+ * 其余子任务等DDL执行完成后再刷新该表的缓存，继续处理之后的事件
+ */
+@Slf4j
+public final class SchemaChangeBarrier {
+
+    // 任务ID -> (DDL标识 -> 屏障)
+    private static final Map<Integer, Map<String, SchemaChangeBarrier>> BARRIERS = new ConcurrentHashMap<>();
+
+    private final Integer taskId;
+    private final String id;
+    private final CountDownLatch arrived;
+    private final CountDownLatch applied = new CountDownLatch(1);
+    private final AtomicInteger remaining;
+
+    private SchemaChangeBarrier(Integer taskId, String id, int parties) {
+        this.taskId = taskId;
+        this.id = id;
+        this.arrived = new CountDownLatch(parties);
+        this.remaining = new AtomicInteger(parties);
+    }
+
+    /**
+     * 获取表结构变更对应的屏障，不存在时创建
+     *
+     * @param taskId 任务ID
+     * @param record 表结构变更记录
+     * @param parties Sink子任务数
+     */
+    public static SchemaChangeBarrier get(Integer taskId, ChangeRecord record, int parties) {
+        String id = record.getTable() + "|" + record.getFile() + "|" + record.getPos() + "|" + record.getDdl();
+        return BARRIERS.computeIfAbsent(taskId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(id, k -> new SchemaChangeBarrier(taskId, id, parties));
+    }
+
+    /**
+     * 当前子任务已写出该表之前的数据
+     */
+    public void arrive() {
+        arrived.countDown();
+    }
+
+    /**
+     * 等待所有子任务到达（执行DDL的子任务调用）
+     */
+    public void awaitArrived() throws InterruptedException {
+        while (!arrived.await(60, TimeUnit.SECONDS)) {
+            log.warn("任务[{}]等待其他Sink子任务到达表结构变更屏障, 剩余: {}, DDL: {}", taskId, arrived.getCount(), id);
+        }
+    }
+
+    /**
+     * DDL已执行（无论成功与否），其余子任务可以继续
+     */
+    public void markApplied() {
+        applied.countDown();
+    }
+
+    /**
+     * 等待DDL执行完成（不执行DDL的子任务调用）
+     */
+    public void awaitApplied() throws InterruptedException {
+        while (!applied.await(60, TimeUnit.SECONDS)) {
+            log.warn("任务[{}]等待表结构变更执行完成, DDL: {}", taskId, id);
+        }
+    }
+
+    /**
+     * 当前子任务已通过屏障，所有子任务都通过后移除
+     */
+    public void leave() {
+        if (remaining.decrementAndGet() == 0) {
+            Map<String, SchemaChangeBarrier> barriers = BARRIERS.get(taskId);
+            if (barriers != null) {
+                barriers.remove(id, this);
+            }
+        }
+    }
+
+    /**
+     * 移除任务的所有屏障（任务停止或重启时调用）
+     */
+    public static void clear(Integer taskId) {
+        BARRIERS.remove(taskId);
+    }
+}
@@ -0,0 +1,34 @@
+package com.yxq.task.flink;
+
+/**
+ * 源表结构变更（DDL）同步到目标表的策略
+ */
+public enum SchemaChangePolicy {
+
+    /**
+     * 不执行DDL，只刷新目标表元数据和SQL模板
+     */
+    IGNORE,
+
+    /**
+     * 只执行不丢数据的变更：ALTER TABLE中不含DROP、RENAME等子句，以及CREATE INDEX
+     */
+    SAFE,
+
+    /**
+     * 执行所有可改写到目标表的单表DDL（ALTER TABLE、CREATE/DROP INDEX、TRUNCATE、DROP TABLE）
+     */
+    ALL;
+
+    /**
+     * 按名称解析策略（不区分大小写），无法识别时返回null
+     */
+    public static SchemaChangePolicy of(String name) {
+        for (SchemaChangePolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name == null ? null : name.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * binlog客户端server id分配
+ * 每个CDC读取并行度需要一个源库上唯一的server id，同一进程内的读取作业从固定范围内分配互不重叠的连续区间，
+ * 作业停止后释放；任务也可以在启动选项中指定区间，指定的区间同样登记，避免与自动分配的区间重叠
+ */
+@Slf4j
+public final class ServerIdAllocator {
+
+    // 自动分配的server id范围
+    private static final int POOL_START = 5400;
+    private static final int POOL_END = 9999;
+
+    // 已分配区间：起始id -> 结束id
+    private static final TreeMap<Integer, Integer> RANGES = new TreeMap<>();
+
+    // 使用者 -> 区间起始id
+    private static final Map<String, Integer> OWNERS = new HashMap<>();
+
+    private ServerIdAllocator() {
+    }
+
+    /**
+     * 为使用者分配连续的server id，使用者已有区间时先释放
+     *
+     * @param owner 使用者，如task-1、database-2
+     * @param count 数量（读取并行度）
+     * @param requested 指定的区间，如"5400-5403"，为空时自动分配
+     * @return server id区间，格式为"起始-结束"
+     */
+    public static synchronized String allocate(String owner, int count, String requested) {
+        release(owner);
+        if (requested != null && !requested.trim().isEmpty()) {
+            int[] range = parse(requested);
+            if (range == null) {
+                log.warn("[{}]指定的server id区间[{}]格式不正确，改为自动分配", owner, requested);
+            } else if (range[1] - range[0] + 1 < count) {
+                log.warn("[{}]指定的server id区间[{}]小于读取并行度{}，改为自动分配", owner, requested, count);
+            } else if (overlaps(range[0], range[1])) {
+                log.warn("[{}]指定的server id区间[{}]与本进程中其他读取作业重叠，改为自动分配", owner, requested);
+            } else {
+                return register(owner, range[0], range[1]);
+            }
+        }
+        int start = POOL_START;
+        for (Map.Entry<Integer, Integer> entry : RANGES.entrySet()) {
+            if (entry.getKey() - start >= count) {
+                break;
+            }
+            start = Math.max(start, entry.getValue() + 1);
+        }
+        if (start + count - 1 > POOL_END) {
+            throw new IllegalStateException("server id已分配完，无法为[" + owner + "]分配" + count + "个server id");
+        }
+        return register(owner, start, start + count - 1);
+    }
+
+    /**
+     * 释放使用者的区间，重复调用无影响
+     */
+    public static synchronized void release(String owner) {
+        Integer start = OWNERS.remove(owner);
+        if (start != null) {
+            RANGES.remove(start);
+        }
+    }
+
+    private static String register(String owner, int start, int end) {
+        RANGES.put(start, end);
+        OWNERS.put(owner, start);
+        String range = start + "-" + end;
+        log.info("[{}]分配server id: {}", owner, range);
+        return range;
+    }
+
+    private static boolean overlaps(int start, int end) {
+        Map.Entry<Integer, Integer> floor = RANGES.floorEntry(end);
+        return floor != null && floor.getValue() >= start;
+    }
+
+    private static int[] parse(String text) {
+        try {
+            String[] parts = text.trim().split("-");
+            int start = Integer.parseInt(parts[0].trim());
+            int end = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : start;
+            return parts.length <= 2 && start > 0 && end >= start ? new int[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
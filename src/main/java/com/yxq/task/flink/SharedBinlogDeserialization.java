@@ -0,0 +1,35 @@
+package com.yxq.task.flink;
+
+import com.ververica.cdc.debezium.DebeziumDeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.util.Collector;
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * 共享binlog读取作业的反序列化实现
+ * 不输出事件，直接把Debezium事件交给SharedBinlogReader按表路由到各任务
+ */
+public class SharedBinlogDeserialization implements DebeziumDeserializationSchema<ChangeRecord> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Integer databaseId;
+
+    // 读取作业的代数，用于丢弃已停止作业的事件
+    private final long generation;
+
+    public SharedBinlogDeserialization(Integer databaseId, long generation) {
+        this.databaseId = databaseId;
+        this.generation = generation;
+    }
+
+    @Override
+    public void deserialize(SourceRecord sourceRecord, Collector<ChangeRecord> collector) {
+        SharedBinlogReader.route(databaseId, generation, sourceRecord);
+    }
+
+    @Override
+    public TypeInformation<ChangeRecord> getProducedType() {
+        return ChangeRecordTypeInfo.INSTANCE;
+    }
+}
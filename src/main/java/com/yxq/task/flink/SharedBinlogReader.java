@@ -0,0 +1,605 @@
+package com.yxq.task.flink;
+
+import com.ververica.cdc.connectors.mysql.source.MySqlSource;
+import com.ververica.cdc.connectors.mysql.source.offset.BinlogOffset;
+import com.ververica.cdc.connectors.mysql.table.StartupOptions;
+import com.yxq.task.entity.Database;
+import com.yxq.task.util.AESUtil;
+import com.yxq.task.util.DatabaseUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
+import org.apache.flink.api.common.restartstrategy.RestartStrategies;
+import org.apache.flink.core.execution.JobClient;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.DiscardingSink;
+import org.apache.flink.util.Collector;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按源库共享的binlog读取
+ * 同一源库的任务共用一个只读binlog的Flink作业（一个binlog连接），事件按表路由到订阅任务的反序列化器，
+ * 转换后的ChangeRecord放入任务的队列，由任务作业中的SharedBinlogSource取出写入。
+ * 监控表变化或新任务需要更早的位点时，从所有订阅者中最早的恢复位点重启读取作业，
+ * 每个订阅按已投递的最后位点跳过重复事件；任务作业重启时只回退该任务的订阅，优先从内存中未确认的事件重新投递；
+ * 任务停止时只移除订阅，最后一个订阅移除后停止读取作业
+ */
+@Slf4j
+public class SharedBinlogReader {
+
+    private static final String SCHEMA_CHANGE_VALUE = "io.debezium.connector.mysql.SchemaChangeValue";
+
+    // 源库ID -> 共享读取器，增删在类锁内进行，路由时直接读取
+    private static final ConcurrentHashMap<Integer, SharedBinlogReader> READERS = new ConcurrentHashMap<>();
+
+    // 任务ID -> 订阅
+    private static final ConcurrentHashMap<Integer, Subscription> TASK_SUBSCRIPTIONS = new ConcurrentHashMap<>();
+
+    private final Integer databaseId;
+
+    // 源库配置，每次订阅时更新为最新配置
+    private Database sourceDb;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    // 路由表：源表名 -> 订阅，订阅变化时整体替换
+    private volatile Map<String, Subscription[]> routes = Collections.emptyMap();
+    private volatile Subscription[] allSubscriptions = new Subscription[0];
+
+    // 当前读取作业，以及作业的代数（旧作业停止后残留的事件按代数丢弃）
+    private JobClient jobClient;
+    private volatile long generation;
+    private Set<String> readingTables = Collections.emptySet();
+    // 读取作业的起始位点，null表示最早的binlog
+    private BinlogOffset readingFrom;
+    // 最近路由的事件位点
+    private volatile BinlogOffset position;
+
+    private final AtomicLong routedEvents = new AtomicLong(0);
+    private final AtomicLong unroutedEvents = new AtomicLong(0);
+
+    private SharedBinlogReader(Integer databaseId) {
+        this.databaseId = databaseId;
+    }
+
+    /**
+     * 订阅源库的binlog，必要时启动或重启共享读取作业
+     *
+     * @param taskId 任务ID
+     * @param sourceDb 源库
+     * @param tables 任务的源表
+     * @param deserializer 任务的反序列化器，只在共享读取线程中调用
+     * @param startOffset 任务的起始位点，null表示最早的binlog
+     * @param queueSize 事件队列容量
+     * @return 订阅
+     */
+    public static synchronized Subscription subscribe(Integer taskId, Database sourceDb, List<String> tables,
+                                                      CustomDeserialization deserializer, BinlogOffset startOffset,
+                                                      int queueSize) throws Exception {
+        unsubscribe(taskId);
+        SharedBinlogReader reader = READERS.computeIfAbsent(sourceDb.getId(), SharedBinlogReader::new);
+        reader.sourceDb = sourceDb;
+        Subscription subscription = new Subscription(taskId, sourceDb.getId(), tables, deserializer, startOffset, queueSize);
+        reader.subscriptions.add(subscription);
+        TASK_SUBSCRIPTIONS.put(taskId, subscription);
+        reader.updateRoutes();
+
+        BinlogOffset current = reader.position != null ? reader.position : reader.readingFrom;
+        boolean restart = reader.jobClient == null || !reader.readingTables.containsAll(subscription.tables)
+                || isBefore(startOffset, current);
+        log.info("任务[{}]订阅源库[{}]共享binlog, 表: {}, 起始位点: {}, 订阅任务数: {}, {}", taskId, reader.databaseId,
+                tables, startOffset != null ? startOffset : "earliest", reader.subscriptions.size(),
+                restart ? "重启共享读取" : "从当前位点加入");
+        if (restart) {
+            try {
+                reader.restart();
+            } catch (Exception e) {
+                unsubscribe(taskId);
+                throw e;
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * 取消任务的订阅，重复调用无影响；源库没有订阅后停止共享读取作业
+     *
+     * @param taskId 任务ID
+     */
+    public static synchronized void unsubscribe(Integer taskId) {
+        Subscription subscription = TASK_SUBSCRIPTIONS.remove(taskId);
+        if (subscription == null) {
+            return;
+        }
+        subscription.active = false;
+        SharedBinlogReader reader = READERS.get(subscription.databaseId);
+        if (reader == null) {
+            return;
+        }
+        reader.subscriptions.remove(subscription);
+        // 移除订阅不重启读取作业，不再订阅的表在路由时直接丢弃
+        if (reader.subscriptions.isEmpty()) {
+            reader.stopJob();
+            READERS.remove(reader.databaseId);
+            ServerIdAllocator.release("database-" + reader.databaseId);
+            log.info("源库[{}]已没有订阅任务，共享binlog读取已停止", reader.databaseId);
+        } else {
+            reader.updateRoutes();
+        }
+        log.info("任务[{}]已取消共享binlog订阅", taskId);
+    }
+
+    /**
+     * 任务作业重启后把订阅回退到checkpoint中已发出的位点，只影响该任务：
+     * 内存中保留了该位点之后的全部事件时直接重新投递，不重启共享读取；
+     * 否则（从更早的checkpoint恢复、未确认事件超出保留上限或订阅已失败）只把该订阅的位点回退，
+     * 从所有订阅者最早的恢复位点重启读取作业，其他订阅按各自位点跳过重复事件
+     *
+     * @param taskId 任务ID
+     * @param restored checkpoint中已发出的最后一个事件位点，null表示从任务的起始位点开始
+     */
+    public static synchronized void rewind(Integer taskId, BinlogOffset restored) throws Exception {
+        Subscription subscription = TASK_SUBSCRIPTIONS.get(taskId);
+        SharedBinlogReader reader = subscription != null ? READERS.get(subscription.databaseId) : null;
+        if (reader == null) {
+            return;
+        }
+        if (reader.jobClient != null && subscription.replayFrom(restored)) {
+            log.info("任务[{}]作业重启，从位点{}重新投递未确认的事件", taskId, describe(subscription.fromOffset(restored)));
+            return;
+        }
+        subscription.epoch++;
+        reader.stopJob();
+        subscription.reset(restored);
+        log.info("任务[{}]作业重启，从位点{}重新读取共享binlog", taskId, describe(subscription.fromOffset(restored)));
+        reader.restart();
+    }
+
+    /**
+     * 获取任务的订阅
+     */
+    public static Subscription getSubscription(Integer taskId) {
+        return TASK_SUBSCRIPTIONS.get(taskId);
+    }
+
+    /**
+     * 任务的共享读取状态，未使用共享读取时返回空
+     */
+    public static Map<String, Object> getStatus(Integer taskId) {
+        Subscription subscription = TASK_SUBSCRIPTIONS.get(taskId);
+        SharedBinlogReader reader = subscription != null ? READERS.get(subscription.databaseId) : null;
+        if (reader == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("databaseId", reader.databaseId);
+        status.put("subscribers", reader.allSubscriptions.length);
+        status.put("routedEvents", reader.routedEvents.get());
+        status.put("unroutedEvents", reader.unroutedEvents.get());
+        BinlogOffset position = reader.position;
+        status.put("position", position != null ? position.toString() : null);
+        status.put("queued", subscription.queue.size());
+        status.put("unconfirmed", subscription.getUnconfirmed());
+        status.put("deliveredEvents", subscription.deliveredEvents.get());
+        status.put("skippedEvents", subscription.skippedEvents.get());
+        status.put("blockedMillis", subscription.blockedMillis.get());
+        return status;
+    }
+
+    /**
+     * 路由一条事件（共享读取作业的反序列化线程调用）
+     *
+     * @param databaseId 源库ID
+     * @param generation 读取作业的代数
+     * @param record Debezium事件
+     */
+    static void route(Integer databaseId, long generation, SourceRecord record) {
+        SharedBinlogReader reader = READERS.get(databaseId);
+        if (reader != null && reader.generation == generation) {
+            reader.dispatch(record);
+        }
+    }
+
+    private void dispatch(SourceRecord record) {
+        Struct value = (Struct) record.value();
+        if (value == null) {
+            return;
+        }
+        BinlogOffset offset = toBinlogOffset(record.sourceOffset());
+        if (offset != null) {
+            position = offset;
+        }
+        Subscription[] targets;
+        if (SCHEMA_CHANGE_VALUE.equals(value.schema().name())) {
+            // 表结构变更由各任务的反序列化器按监控表过滤
+            targets = allSubscriptions;
+        } else {
+            Struct source = value.schema().field("source") != null ? value.getStruct("source") : null;
+            targets = source != null ? routes.get(source.getString("table")) : null;
+        }
+        if (targets == null || targets.length == 0) {
+            unroutedEvents.incrementAndGet();
+            return;
+        }
+        routedEvents.incrementAndGet();
+        for (Subscription subscription : targets) {
+            subscription.deliver(record, offset);
+        }
+    }
+
+    private void updateRoutes() {
+        Map<String, List<Subscription>> tableSubscriptions = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            for (String table : subscription.tables) {
+                tableSubscriptions.computeIfAbsent(table, k -> new ArrayList<>()).add(subscription);
+            }
+        }
+        Map<String, Subscription[]> newRoutes = new HashMap<>();
+        for (Map.Entry<String, List<Subscription>> entry : tableSubscriptions.entrySet()) {
+            newRoutes.put(entry.getKey(), entry.getValue().toArray(new Subscription[0]));
+        }
+        routes = newRoutes;
+        allSubscriptions = subscriptions.toArray(new Subscription[0]);
+    }
+
+    /**
+     * 从所有订阅者最早的恢复位点重启读取作业，监控表为所有订阅表的并集
+     */
+    private void restart() throws Exception {
+        stopJob();
+        BinlogOffset from = null;
+        boolean first = true;
+        Set<String> tables = new TreeSet<>();
+        for (Subscription subscription : subscriptions) {
+            BinlogOffset resume = subscription.getResumeOffset();
+            if (first || isBefore(resume, from)) {
+                from = resume;
+            }
+            first = false;
+            tables.addAll(subscription.tables);
+        }
+        startJob(tables, from);
+    }
+
+    private void startJob(Set<String> tables, BinlogOffset from) throws Exception {
+        List<String> includeTables = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            includeTables.add(sourceDb.getDbName() + "." + table);
+        }
+        long nextGeneration = generation + 1;
+        MySqlSource<ChangeRecord> mySqlSource = MySqlSource.<ChangeRecord>builder()
+                .jdbcProperties(FlinkCDCMain.createJdbcProperties(sourceDb))
+                .hostname(sourceDb.getHost())
+                .port(sourceDb.getPort())
+                .username(sourceDb.getUsername())
+                .password(AESUtil.decrypt(sourceDb.getPassword()))
+                .serverTimeZone(DatabaseUtil.getServerTimezone(sourceDb))
+                .databaseList(sourceDb.getDbName())
+                .tableList(includeTables.toArray(new String[0]))
+                .startupOptions(from != null ? StartupOptions.specificOffset(from) : StartupOptions.earliest())
+                .serverId(ServerIdAllocator.allocate("database-" + databaseId, 1, null))
+                .deserializer(new SharedBinlogDeserialization(databaseId, nextGeneration))
+                // 各任务的列裁剪不同，共享读取不设置column.include.list，由任务的反序列化器裁剪
+                .debeziumProperties(FlinkCDCMain.getDebeziumProperties(sourceDb.getDbName(), Collections.emptyList()))
+                .includeSchemaChanges(true)
+                .build();
+
+        // 读取作业没有状态，失败重启时从起始位点重新读取，重复事件由各订阅按位点跳过
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+        env.setParallelism(1);
+        env.setRestartStrategy(RestartStrategies.fixedDelayRestart(3, 10000));
+        env.fromSource(mySqlSource, WatermarkStrategy.noWatermarks(), "Shared MySQL CDC Source - Database " + databaseId)
+                .addSink(new DiscardingSink<>());
+
+        generation = nextGeneration;
+        readingTables = tables;
+        readingFrom = from;
+        position = null;
+        JobClient client = env.executeAsync("Shared Binlog Reader - Database " + databaseId);
+        jobClient = client;
+        client.getJobExecutionResult().whenComplete((result, error) -> onJobTerminated(client, error));
+        log.info("源库[{}]共享binlog读取已启动, JobId: {}, 起始位点: {}, 监控表: {}", databaseId, client.getJobID(),
+                from != null ? from : "earliest", includeTables);
+    }
+
+    private void stopJob() {
+        JobClient client = jobClient;
+        if (client == null) {
+            return;
+        }
+        jobClient = null;
+        // 停止后旧作业残留的事件不再路由
+        generation++;
+        try {
+            client.cancel().get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("停止源库[{}]共享binlog读取作业异常: {}", databaseId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取作业意外结束（重启次数用尽）时使所有订阅失败，任务作业随之重启并重新订阅
+     */
+    private void onJobTerminated(JobClient client, Throwable error) {
+        synchronized (SharedBinlogReader.class) {
+            if (jobClient != client) {
+                return;
+            }
+            jobClient = null;
+            generation++;
+            log.error("源库[{}]共享binlog读取作业已结束: {}", databaseId, error != null ? error.getMessage() : "正常结束");
+            Exception failure = new IllegalStateException("源库[" + databaseId + "]共享binlog读取作业已结束", error);
+            for (Subscription subscription : subscriptions) {
+                subscription.failure = failure;
+            }
+        }
+    }
+
+    private static Object describe(BinlogOffset offset) {
+        return offset != null ? offset : "earliest";
+    }
+
+    /**
+     * a是否早于b，null表示最早的binlog
+     */
+    private static boolean isBefore(BinlogOffset a, BinlogOffset b) {
+        if (a == null) {
+            return b != null;
+        }
+        return b != null && a.isBefore(b);
+    }
+
+    private static BinlogOffset toBinlogOffset(Map<String, ?> sourceOffset) {
+        if (sourceOffset == null || sourceOffset.get(BinlogOffset.BINLOG_FILENAME_OFFSET_KEY) == null) {
+            return null;
+        }
+        Map<String, String> offset = new HashMap<>();
+        for (Map.Entry<String, ?> entry : sourceOffset.entrySet()) {
+            if (entry.getValue() != null) {
+                offset.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        return new BinlogOffset(offset);
+    }
+
+    /**
+     * 一个任务的订阅：按位点去重后调用任务的反序列化器，结果放入有界队列，队列满时阻塞共享读取。
+     * 任务作业取出的事件在checkpoint完成前保留在内存中，作业重启时重新投递
+     */
+    public static final class Subscription {
+
+        private final Integer taskId;
+        private final Integer databaseId;
+        private final Set<String> tables;
+        private final CustomDeserialization deserializer;
+        // 任务的起始位点，null表示最早的binlog
+        private final BinlogOffset startOffset;
+        private final LinkedBlockingQueue<Delivery> queue;
+        // 未确认事件的保留上限，超出后丢弃最早的事件，作业重启时改为重新读取binlog
+        private final int maxUnconfirmed;
+        private final Collector<ChangeRecord> collector;
+        // 当前事件反序列化出的记录，只在共享读取线程中使用
+        private final List<ChangeRecord> collected = new ArrayList<>();
+
+        // 已放入队列的最后一个事件位点，读取作业重启时从这里恢复并跳过重复事件
+        private volatile BinlogOffset lastDelivered;
+        private volatile boolean active = true;
+        private volatile Exception failure;
+        // 订阅回退时加一，旧读取作业残留的事件不再放入队列
+        private volatile int epoch;
+
+        // 任务作业已取出、尚未被完成的checkpoint确认的事件，以及作业重启后待重新投递的事件（都在订阅锁内访问）
+        private final ArrayDeque<Delivery> unconfirmed = new ArrayDeque<>();
+        private final ArrayDeque<Delivery> replay = new ArrayDeque<>();
+        // 内存中保留了该位点之后的全部事件，null表示最早的binlog
+        private BinlogOffset retainedFrom;
+
+        private final AtomicLong deliveredEvents = new AtomicLong(0);
+        private final AtomicLong skippedEvents = new AtomicLong(0);
+        private final AtomicLong blockedMillis = new AtomicLong(0);
+
+        Subscription(Integer taskId, Integer databaseId, List<String> tables, CustomDeserialization deserializer,
+                     BinlogOffset startOffset, int queueSize) {
+            this.taskId = taskId;
+            this.databaseId = databaseId;
+            this.tables = new TreeSet<>(tables);
+            this.deserializer = deserializer;
+            this.startOffset = startOffset;
+            this.retainedFrom = startOffset;
+            this.queue = new LinkedBlockingQueue<>(queueSize);
+            this.maxUnconfirmed = queueSize * 8;
+            this.collector = new Collector<ChangeRecord>() {
+                @Override
+                public void collect(ChangeRecord record) {
+                    collected.add(record);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        void deliver(SourceRecord record, BinlogOffset offset) {
+            if (!active || failure != null) {
+                return;
+            }
+            if (offset != null) {
+                BinlogOffset delivered = lastDelivered;
+                if (delivered != null ? offset.isAtOrBefore(delivered) : startOffset != null && offset.isBefore(startOffset)) {
+                    skippedEvents.incrementAndGet();
+                    return;
+                }
+            }
+            int currentEpoch = epoch;
+            collected.clear();
+            try {
+                deserializer.deserialize(record, collector);
+            } catch (Exception e) {
+                // 只使当前任务失败，不影响共享读取的其他任务
+                log.error("任务[{}]反序列化共享binlog事件异常: {}", taskId, e.getMessage(), e);
+                failure = e;
+                return;
+            }
+            if (!collected.isEmpty() && !enqueue(new Delivery(new ArrayList<>(collected), offset), currentEpoch)) {
+                return;
+            }
+            deliveredEvents.incrementAndGet();
+            if (offset != null) {
+                lastDelivered = offset;
+            }
+        }
+
+        private boolean enqueue(Delivery delivery, int currentEpoch) {
+            try {
+                if (queue.offer(delivery)) {
+                    return true;
+                }
+                long start = System.currentTimeMillis();
+                boolean offered = false;
+                while (active && epoch == currentEpoch && !(offered = queue.offer(delivery, 100, TimeUnit.MILLISECONDS))) {
+                    // 等待任务消费
+                }
+                blockedMillis.addAndGet(System.currentTimeMillis() - start);
+                return offered;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * 取出一个事件（先取待重新投递的事件），取出的事件保留到checkpoint确认；订阅已失败时抛出异常
+         */
+        public Delivery poll(long timeoutMs) throws Exception {
+            Exception error = failure;
+            if (error != null) {
+                throw error;
+            }
+            Delivery delivery;
+            synchronized (this) {
+                delivery = replay.poll();
+            }
+            if (delivery == null) {
+                delivery = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            if (delivery != null) {
+                synchronized (this) {
+                    unconfirmed.add(delivery);
+                    if (unconfirmed.size() > maxUnconfirmed) {
+                        Delivery dropped = unconfirmed.poll();
+                        if (dropped.offset != null) {
+                            retainedFrom = dropped.offset;
+                        }
+                    }
+                }
+            }
+            return delivery;
+        }
+
+        /**
+         * checkpoint完成，丢弃该checkpoint包含的最后一个事件及之前的未确认事件
+         *
+         * @param last checkpoint前发出的最后一个事件
+         */
+        public synchronized void confirm(Delivery last) {
+            if (last == null || !unconfirmed.contains(last)) {
+                return;
+            }
+            Delivery delivery;
+            do {
+                delivery = unconfirmed.poll();
+                if (delivery.offset != null) {
+                    retainedFrom = delivery.offset;
+                }
+            } while (delivery != last);
+        }
+
+        /**
+         * 内存中保留了恢复位点之后的全部事件时，把它们排到队列之前重新投递
+         */
+        private synchronized boolean replayFrom(BinlogOffset restored) {
+            BinlogOffset from = fromOffset(restored);
+            if (failure != null || isBefore(from, retainedFrom)) {
+                return false;
+            }
+            ArrayDeque<Delivery> pending = new ArrayDeque<>();
+            for (Delivery delivery : unconfirmed) {
+                if (delivery.offset == null || from == null || delivery.offset.isAfter(from)) {
+                    pending.add(delivery);
+                }
+            }
+            pending.addAll(replay);
+            unconfirmed.clear();
+            replay.clear();
+            replay.addAll(pending);
+            retainedFrom = from;
+            return true;
+        }
+
+        /**
+         * 把订阅回退到恢复位点，清空内存中的事件，等待读取作业重新读取
+         */
+        private synchronized void reset(BinlogOffset restored) {
+            lastDelivered = restored;
+            retainedFrom = fromOffset(restored);
+            failure = null;
+            unconfirmed.clear();
+            replay.clear();
+            queue.clear();
+        }
+
+        private BinlogOffset fromOffset(BinlogOffset restored) {
+            return restored != null ? restored : startOffset;
+        }
+
+        private BinlogOffset getResumeOffset() {
+            BinlogOffset delivered = lastDelivered;
+            return delivered != null ? delivered : startOffset;
+        }
+
+        private synchronized int getUnconfirmed() {
+            return unconfirmed.size() + replay.size();
+        }
+
+        public Integer getTaskId() {
+            return taskId;
+        }
+    }
+
+    /**
+     * 一个binlog事件反序列化出的记录及其位点，任务作业在一次checkpoint锁内全部发出
+     */
+    public static final class Delivery {
+
+        private final List<ChangeRecord> records;
+        private final BinlogOffset offset;
+
+        Delivery(List<ChangeRecord> records, BinlogOffset offset) {
+            this.records = records;
+            this.offset = offset;
+        }
+
+        public List<ChangeRecord> getRecords() {
+            return records;
+        }
+
+        public BinlogOffset getOffset() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.yxq.task.flink;
+
+import com.ververica.cdc.connectors.mysql.source.offset.BinlogOffset;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.api.common.state.CheckpointListener;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 任务作业中的共享binlog数据源
+ * 从SharedBinlogReader中任务的订阅队列取出事件，后续写入流程与独立读取相同；
+ * 已发出的最后一个事件位点保存在算子状态中，作业重启时只把本任务的订阅回退到该位点重新投递
+ */
+@Slf4j
+public class SharedBinlogSource extends RichSourceFunction<ChangeRecord>
+        implements ResultTypeQueryable<ChangeRecord>, CheckpointedFunction, CheckpointListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Integer taskId;
+
+    private volatile boolean running = true;
+
+    private transient ListState<Map<String, String>> offsetState;
+    // 从checkpoint恢复时是否需要回退订阅，以及恢复的位点（null表示任务的起始位点）
+    private transient boolean restored;
+    private transient BinlogOffset restoredOffset;
+    // 已发出的最后一个事件及其位点，在checkpoint锁内更新
+    private transient SharedBinlogReader.Delivery lastEmitted;
+    private transient BinlogOffset emittedOffset;
+    // checkpoint ID -> 该checkpoint前发出的最后一个事件，checkpoint完成后确认
+    private transient TreeMap<Long, SharedBinlogReader.Delivery> pendingCheckpoints;
+
+    public SharedBinlogSource(Integer taskId) {
+        this.taskId = taskId;
+    }
+
+    @Override
+    public void initializeState(FunctionInitializationContext context) throws Exception {
+        offsetState = context.getOperatorStateStore().getListState(
+                new ListStateDescriptor<>("shared-binlog-offset", Types.MAP(Types.STRING, Types.STRING)));
+        pendingCheckpoints = new TreeMap<>();
+        restored = context.isRestored();
+        if (restored) {
+            for (Map<String, String> offset : offsetState.get()) {
+                restoredOffset = new BinlogOffset(offset);
+            }
+            emittedOffset = restoredOffset;
+        }
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        super.open(parameters);
+        if (restored || getRuntimeContext().getAttemptNumber() > 0) {
+            SharedBinlogReader.rewind(taskId, restoredOffset);
+        }
+    }
+
+    @Override
+    public void run(SourceContext<ChangeRecord> ctx) throws Exception {
+        SharedBinlogReader.Subscription subscription = SharedBinlogReader.getSubscription(taskId);
+        if (subscription == null) {
+            throw new IllegalStateException("任务[" + taskId + "]没有共享binlog订阅");
+        }
+        log.info("任务[{}]开始读取共享binlog事件", taskId);
+        while (running) {
+            SharedBinlogReader.Delivery delivery = subscription.poll(200);
+            if (delivery != null) {
+                // 同一个binlog事件的记录在一次checkpoint锁内发出，checkpoint位点不会落在事件中间
+                synchronized (ctx.getCheckpointLock()) {
+                    for (ChangeRecord record : delivery.getRecords()) {
+                        ctx.collect(record);
+                    }
+                    lastEmitted = delivery;
+                    if (delivery.getOffset() != null) {
+                        emittedOffset = delivery.getOffset();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void snapshotState(FunctionSnapshotContext context) throws Exception {
+        offsetState.update(emittedOffset != null
+                ? Collections.singletonList(emittedOffset.getOffset()) : Collections.emptyList());
+        if (lastEmitted != null) {
+            pendingCheckpoints.put(context.getCheckpointId(), lastEmitted);
+        }
+    }
+
+    @Override
+    public void notifyCheckpointComplete(long checkpointId) {
+        Map.Entry<Long, SharedBinlogReader.Delivery> entry = pendingCheckpoints.floorEntry(checkpointId);
+        if (entry == null) {
+            return;
+        }
+        pendingCheckpoints.headMap(checkpointId, true).clear();
+        SharedBinlogReader.Subscription subscription = SharedBinlogReader.getSubscription(taskId);
+        if (subscription != null) {
+            subscription.confirm(entry.getValue());
+        }
+    }
+
+    @Override
+    public void cancel() {
+        running = false;
+    }
+
+    @Override
+    public TypeInformation<ChangeRecord> getProducedType() {
+        return ChangeRecordTypeInfo.INSTANCE;
+    }
+}
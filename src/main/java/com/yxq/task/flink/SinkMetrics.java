@@ -0,0 +1,268 @@
+package com.yxq.task.flink;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务级同步统计
+ * Flink以本地模式运行在当前JVM中，同一任务的多个Sink并行子任务共享同一份计数器，
+ * 统计查询和持久化都从这里读取，保证多个子任务的数据正确汇总
+ */
+@Slf4j
+public class SinkMetrics {
+
+    // 任务ID -> 统计
+    private static final ConcurrentHashMap<Integer, SinkMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    // 每个表的操作计数器
+    private final ConcurrentHashMap<String, AtomicInteger> tableInsertCount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> tableUpdateCount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> tableDeleteCount = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> tableErrorCount = new ConcurrentHashMap<>();
+
+    // 总体计数器
+    private final AtomicInteger insertCount = new AtomicInteger(0);
+    private final AtomicInteger updateCount = new AtomicInteger(0);
+    private final AtomicInteger deleteCount = new AtomicInteger(0);
+    private final AtomicInteger errorCount = new AtomicInteger(0);
+
+    // 目标库写入限流累计等待时间
+    private final AtomicLong throttleMillis = new AtomicLong(0);
+
+    // 扩展计数器：表名 -> (指标名 -> 计数)，如批量刷新次数、合并数等
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicLong>> tableCounters = new ConcurrentHashMap<>();
+
+    // 分阶段写入时间窗口：表名 -> (阶段 -> [首次写入开始时间, 最近写入完成时间])
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, long[]>> phaseWindows = new ConcurrentHashMap<>();
+
+    // 各Sink子任务的目标库连接池：子任务序号 -> 连接池
+    private final ConcurrentHashMap<Integer, DruidDataSource> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 获取任务的统计，不存在则创建
+     *
+     * @param taskId 任务ID
+     * @return 任务统计
+     */
+    public static SinkMetrics get(Integer taskId) {
+        return REGISTRY.computeIfAbsent(taskId, k -> new SinkMetrics());
+    }
+
+    /**
+     * 清除任务的统计（任务启动或停止时调用）
+     *
+     * @param taskId 任务ID
+     */
+    public static void reset(Integer taskId) {
+        if (REGISTRY.remove(taskId) != null) {
+            log.info("已清除任务[{}]的内存统计", taskId);
+        }
+    }
+
+    public void recordInsert(String tableName) {
+        insertCount.incrementAndGet();
+        tableInsertCount.computeIfAbsent(tableName, k -> new AtomicInteger(0)).incrementAndGet();
+    }
+
+    public void recordUpdate(String tableName) {
+        updateCount.incrementAndGet();
+        tableUpdateCount.computeIfAbsent(tableName, k -> new AtomicInteger(0)).incrementAndGet();
+    }
+
+    public void recordDelete(String tableName) {
+        deleteCount.incrementAndGet();
+        tableDeleteCount.computeIfAbsent(tableName, k -> new AtomicInteger(0)).incrementAndGet();
+    }
+
+    /**
+     * 记录错误
+     *
+     * @param tableName 表名，未知时为null，只计入总数
+     */
+    public void recordError(String tableName) {
+        errorCount.incrementAndGet();
+        if (tableName != null) {
+            tableErrorCount.computeIfAbsent(tableName, k -> new AtomicInteger(0)).incrementAndGet();
+        }
+    }
+
+    /**
+     * 累加表的扩展计数器
+     *
+     * @param tableName 表名
+     * @param name 指标名
+     * @param delta 增量
+     */
+    public void add(String tableName, String name, long delta) {
+        tableCounters.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, k -> new AtomicLong(0)).addAndGet(delta);
+    }
+
+    /**
+     * 设置表的扩展指标当前值（如自适应批次大小）
+     */
+    public void set(String tableName, String name, long value) {
+        tableCounters.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, k -> new AtomicLong(0)).set(value);
+    }
+
+    /**
+     * 记录某一阶段（snapshot/binlog）的一次写入
+     *
+     * @param tableName 表名
+     * @param phase 阶段
+     * @param rows 写入行数
+     * @param startTime 写入开始时间
+     * @param endTime 写入完成时间
+     */
+    public void recordPhase(String tableName, String phase, long rows, long startTime, long endTime) {
+        add(tableName, phase + "Rows", rows);
+        add(tableName, phase + "WriteMillis", endTime - startTime);
+        long[] window = phaseWindows.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(phase, k -> new long[]{startTime, endTime});
+        synchronized (window) {
+            window[0] = Math.min(window[0], startTime);
+            window[1] = Math.max(window[1], endTime);
+        }
+    }
+
+    /**
+     * 获取表的扩展计数器值
+     */
+    public long get(String tableName, String name) {
+        Map<String, AtomicLong> counters = tableCounters.get(tableName);
+        AtomicLong counter = counters != null ? counters.get(name) : null;
+        return counter != null ? counter.get() : 0L;
+    }
+
+    /**
+     * 获取表的全部扩展计数器
+     *
+     * @param tableName 表名
+     * @return 指标名 -> 计数
+     */
+    public Map<String, Object> getTableCounters(String tableName) {
+        Map<String, Object> result = new HashMap<>();
+        Map<String, AtomicLong> counters = tableCounters.get(tableName);
+        if (counters != null) {
+            counters.forEach((name, counter) -> result.put(name, counter.get()));
+        }
+        // 各阶段吞吐量：阶段内写入行数 / 阶段首次写入到最近写入的时长
+        Map<String, long[]> windows = phaseWindows.get(tableName);
+        if (windows != null) {
+            windows.forEach((phase, window) -> {
+                long startTime;
+                long endTime;
+                synchronized (window) {
+                    startTime = window[0];
+                    endTime = window[1];
+                }
+                result.put(phase + "StartTime", startTime);
+                result.put(phase + "LastTime", endTime);
+                result.put(phase + "RowsPerSec", get(tableName, phase + "Rows") * 1000 / Math.max(1, endTime - startTime));
+            });
+        }
+        return result;
+    }
+
+    public void addThrottleMillis(long millis) {
+        throttleMillis.addAndGet(millis);
+    }
+
+    public long getThrottleMillis() {
+        return throttleMillis.get();
+    }
+
+    public int getInsertCount() {
+        return insertCount.get();
+    }
+
+    public int getUpdateCount() {
+        return updateCount.get();
+    }
+
+    public int getDeleteCount() {
+        return deleteCount.get();
+    }
+
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    public int getInsertCount(String tableName) {
+        return getCount(tableInsertCount, tableName);
+    }
+
+    public int getUpdateCount(String tableName) {
+        return getCount(tableUpdateCount, tableName);
+    }
+
+    public int getDeleteCount(String tableName) {
+        return getCount(tableDeleteCount, tableName);
+    }
+
+    public int getErrorCount(String tableName) {
+        return getCount(tableErrorCount, tableName);
+    }
+
+    private static int getCount(Map<String, AtomicInteger> counters, String tableName) {
+        AtomicInteger counter = counters.get(tableName);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * 登记子任务的目标库连接池
+     */
+    public void registerPool(int subtaskIndex, DruidDataSource pool) {
+        if (pool != null) {
+            pools.put(subtaskIndex, pool);
+        }
+    }
+
+    /**
+     * 移除子任务的目标库连接池
+     */
+    public void unregisterPool(int subtaskIndex) {
+        pools.remove(subtaskIndex);
+    }
+
+    /**
+     * 汇总所有子任务的目标库连接池统计
+     *
+     * @return 连接池统计（最大连接数、活跃数、空闲数、等待次数、累计等待耗时）
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        if (pools.isEmpty()) {
+            return stats;
+        }
+        int maxActive = 0;
+        int activeCount = 0;
+        int idleCount = 0;
+        long waitCount = 0;
+        long waitMillis = 0;
+        long createCount = 0;
+        for (DruidDataSource pool : pools.values()) {
+            maxActive += pool.getMaxActive();
+            activeCount += pool.getActiveCount();
+            idleCount += pool.getPoolingCount();
+            waitCount += pool.getNotEmptyWaitCount();
+            waitMillis += pool.getNotEmptyWaitMillis();
+            createCount += pool.getCreateCount();
+        }
+        stats.put("subtaskCount", pools.size());
+        stats.put("maxActive", maxActive);
+        stats.put("activeCount", activeCount);
+        stats.put("idleCount", idleCount);
+        stats.put("waitCount", waitCount);
+        stats.put("waitMillis", waitMillis);
+        stats.put("createCount", createCount);
+        return stats;
+    }
+}
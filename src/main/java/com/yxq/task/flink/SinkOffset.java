@@ -0,0 +1,82 @@
+package com.yxq.task.flink;
+
+import io.debezium.connector.mysql.GtidSet;
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+
+/**
+ * Sink已写入的binlog位点
+ * file/pos/row为最后一条已写入事件的位置，用于恢复时跳过已写入的事件；
+ * restartFile/restartPos为该事件所在事务的起始位置，用于从指定位点重新启动CDC源
+ */
+@Data
+public class SinkOffset implements Serializable, Comparable<SinkOffset> {
+
+    private static final long serialVersionUID = 1L;
+
+    private String file;
+    private long pos;
+    private int row;
+    private String restartFile;
+    private long restartPos;
+    private String gtid;
+
+    /**
+     * 从CDC事件中解析binlog位点，全量快照事件没有可比较的位点，返回null
+     *
+     * @param record CDC事件
+     * @return binlog位点
+     */
+    public static SinkOffset fromEvent(ChangeRecord record) {
+        String file = record.getFile();
+        if (file == null || file.isEmpty() || "r".equals(record.getOp())) {
+            return null;
+        }
+        SinkOffset offset = new SinkOffset();
+        offset.setFile(file);
+        offset.setPos(record.getPos());
+        offset.setRow(record.getRow());
+        offset.setRestartFile(record.getRestartFile() != null ? record.getRestartFile() : file);
+        offset.setRestartPos(record.getRestartFile() != null ? record.getRestartPos() : offset.getPos());
+        offset.setGtid(record.getGtid());
+        return offset;
+    }
+
+    /**
+     * 两个位点都有GTID集合且不同时按集合的包含关系比较（主从切换后文件名和位置不可比较），
+     * 否则按 文件名、位置、行号 比较（binlog文件名序号定长，可直接按字符串比较）
+     */
+    @Override
+    public int compareTo(SinkOffset other) {
+        int result = compareGtid(gtid, other.gtid);
+        if (result != 0) {
+            return result;
+        }
+        result = file.compareTo(other.file);
+        if (result != 0) {
+            return result;
+        }
+        result = Long.compare(pos, other.pos);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(row, other.row);
+    }
+
+    /**
+     * 比较两个已完成事务的GTID集合，任一为空、相同或互不包含时返回0
+     */
+    static int compareGtid(String a, String b) {
+        if (StringUtils.isEmpty(a) || StringUtils.isEmpty(b) || a.equals(b)) {
+            return 0;
+        }
+        GtidSet left = new GtidSet(a);
+        GtidSet right = new GtidSet(b);
+        if (left.isContainedWithin(right)) {
+            return -1;
+        }
+        return right.isContainedWithin(left) ? 1 : 0;
+    }
+}
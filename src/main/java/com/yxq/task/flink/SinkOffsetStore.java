@@ -0,0 +1,142 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 目标库中的Sink位点表读写
+ * 事务模式下，每批数据与位点在同一个目标库事务中提交
+ */
+@Slf4j
+public class SinkOffsetStore {
+
+    public static final String TABLE_NAME = "cdc_sink_offset";
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS `" + TABLE_NAME + "` (" +
+            "`task_id` bigint(20) NOT NULL COMMENT '任务ID'," +
+            "`subtask` int(11) NOT NULL COMMENT 'Sink子任务序号'," +
+            "`binlog_file` varchar(255) NOT NULL COMMENT '最后写入事件的binlog文件'," +
+            "`binlog_pos` bigint(20) NOT NULL COMMENT '最后写入事件的binlog位置'," +
+            "`binlog_row` int(11) NOT NULL DEFAULT 0 COMMENT '最后写入事件在binlog事件中的行号'," +
+            "`restart_file` varchar(255) NOT NULL COMMENT '重启binlog文件'," +
+            "`restart_pos` bigint(20) NOT NULL COMMENT '重启binlog位置'," +
+            "`gtid` varchar(2048) NULL DEFAULT NULL COMMENT 'GTID集合'," +
+            "`update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'," +
+            "PRIMARY KEY (`task_id`, `subtask`)" +
+            ") ENGINE = InnoDB CHARACTER SET = utf8mb4 COMMENT = 'CDC Sink已提交位点'";
+
+    private static final String UPSERT_SQL = "INSERT INTO `" + TABLE_NAME + "` " +
+            "(task_id, subtask, binlog_file, binlog_pos, binlog_row, restart_file, restart_pos, gtid) VALUES (?,?,?,?,?,?,?,?) " +
+            "ON DUPLICATE KEY UPDATE binlog_file=VALUES(binlog_file), binlog_pos=VALUES(binlog_pos), binlog_row=VALUES(binlog_row), " +
+            "restart_file=VALUES(restart_file), restart_pos=VALUES(restart_pos), gtid=VALUES(gtid)";
+
+    private static final String SELECT_SQL = "SELECT subtask, binlog_file, binlog_pos, binlog_row, restart_file, restart_pos, gtid " +
+            "FROM `" + TABLE_NAME + "` WHERE task_id = ?";
+
+    private SinkOffsetStore() {
+    }
+
+    /**
+     * 创建位点表（不存在时）
+     */
+    public static void ensureTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        }
+    }
+
+    /**
+     * 保存子任务位点，与数据写入处于同一事务中
+     */
+    public static void save(Connection conn, Integer taskId, int subtask, SinkOffset offset) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            stmt.setInt(1, taskId);
+            stmt.setInt(2, subtask);
+            stmt.setString(3, offset.getFile());
+            stmt.setLong(4, offset.getPos());
+            stmt.setInt(5, offset.getRow());
+            stmt.setString(6, offset.getRestartFile());
+            stmt.setLong(7, offset.getRestartPos());
+            stmt.setString(8, offset.getGtid());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 加载子任务位点
+     *
+     * @return 位点，不存在时返回null
+     */
+    public static SinkOffset load(Connection conn, Integer taskId, int subtask) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQL + " AND subtask = ?")) {
+            stmt.setInt(1, taskId);
+            stmt.setInt(2, subtask);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readOffset(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * 加载任务所有子任务中最早的位点，作为CDC源的重启位置（保证任何子任务都不会漏数据）
+     *
+     * @param subtaskCount Sink子任务数，只有每个子任务都有位点时才返回
+     * @return 最早位点，不存在或读取失败时返回null
+     */
+    public static SinkOffset loadEarliest(String url, String username, String password, Integer taskId, int subtaskCount) {
+        try (Connection conn = DriverManager.getConnection(url, username, password)) {
+            ensureTable(conn);
+            SinkOffset earliest = null;
+            int count = 0;
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQL)) {
+                stmt.setInt(1, taskId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getInt("subtask") >= subtaskCount) {
+                            continue;
+                        }
+                        count++;
+                        SinkOffset offset = readOffset(rs);
+                        if (earliest == null || compareRestart(offset, earliest) < 0) {
+                            earliest = offset;
+                        }
+                    }
+                }
+            }
+            if (count < subtaskCount) {
+                log.info("任务[{}]只有{}/{}个子任务存在Sink位点，不从位点恢复", taskId, count, subtaskCount);
+                return null;
+            }
+            return earliest;
+        } catch (SQLException e) {
+            log.error("读取任务[{}]的Sink位点失败: {}", taskId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static int compareRestart(SinkOffset a, SinkOffset b) {
+        int result = SinkOffset.compareGtid(a.getGtid(), b.getGtid());
+        if (result != 0) {
+            return result;
+        }
+        result = a.getRestartFile().compareTo(b.getRestartFile());
+        return result != 0 ? result : Long.compare(a.getRestartPos(), b.getRestartPos());
+    }
+
+    private static SinkOffset readOffset(ResultSet rs) throws SQLException {
+        SinkOffset offset = new SinkOffset();
+        offset.setFile(rs.getString("binlog_file"));
+        offset.setPos(rs.getLong("binlog_pos"));
+        offset.setRow(rs.getInt("binlog_row"));
+        offset.setRestartFile(rs.getString("restart_file"));
+        offset.setRestartPos(rs.getLong("restart_pos"));
+        offset.setGtid(rs.getString("gtid"));
+        return offset;
+    }
+}
@@ -0,0 +1,308 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Sink写入配置
+ * 来源于任务启动选项(SyncTask.startupOptions)中的sink节点，例如：
+ * {"type":"initial","sink":{"batchSize":500,"batchBytes":4194304,"lingerMs":200,"maxRowsPerStatement":500}}
+ */
+@Slf4j
+@Data
+public class SinkOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern SESSION_VARIABLE_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern SESSION_VALUE_PATTERN = Pattern.compile("[A-Za-z0-9_.]+");
+
+    /**
+     * 每个目标表攒批的最大行数，小于等于1表示逐条同步写入
+     */
+    private int batchSize = 1;
+
+    /**
+     * 每个目标表攒批的最大字节数
+     */
+    private long batchBytes = 4L * 1024 * 1024;
+
+    /**
+     * 攒批最长等待时间（毫秒）
+     */
+    private long lingerMs = 200;
+
+    /**
+     * 自适应攒批：按刷新耗时动态调整每个表的批次大小和等待时间（AIMD），batchSize作为初始值
+     */
+    private boolean adaptiveBatch = false;
+
+    /**
+     * 自适应攒批的目标刷新耗时（毫秒），低于该值时加大批次，超过时批次减半
+     */
+    private long targetFlushMs = 500;
+
+    /**
+     * 自适应攒批的最小批次
+     */
+    private int minBatchSize = 16;
+
+    /**
+     * 自适应攒批的最大批次
+     */
+    private int maxBatchSize = 20000;
+
+    /**
+     * 多行合并upsert语句的最大行数，小于等于1表示不合并
+     */
+    private int maxRowsPerStatement = 500;
+
+    /**
+     * 多行合并upsert语句的最大字节数，实际取值不超过目标库max_allowed_packet
+     */
+    private long maxStatementBytes = 4L * 1024 * 1024;
+
+    /**
+     * 合并删除语句（DELETE ... WHERE key IN (...)）的最大行数，小于等于1表示不合并
+     */
+    private int maxDeleteBatch = 1000;
+
+    /**
+     * 攒批时是否按主键合并同一行的多次变更，只写出最终结果
+     */
+    private boolean compaction = true;
+
+    /**
+     * 更新事件只写入变更列：UPDATE ... SET <变更列> WHERE <主键>，目标表列均未变化的更新直接跳过；
+     * 目标表没有主键或唯一键时仍使用upsert
+     */
+    private boolean updateChangedColumns = true;
+
+    /**
+     * Sink并行度，大于1时按（表，主键）分区到多个子任务并行写入，同一行的变更保持有序
+     */
+    private int parallelism = 1;
+
+    /**
+     * 异步写入：通过Flink异步I/O把事件分发到多个写入线程，同一主键的事件由同一线程按顺序写入
+     */
+    private boolean asyncApply = false;
+
+    /**
+     * 异步写入线程数（每个子任务）
+     */
+    private int asyncLanes = 4;
+
+    /**
+     * 异步写入最大在途事件数
+     */
+    private int asyncCapacity = 1000;
+
+    /**
+     * 异步写入超时时间（毫秒），超时后作业失败重启
+     */
+    private long asyncTimeoutMs = 60000;
+
+    /**
+     * 每个写入线程单次合并写入的最大事件数
+     */
+    private int asyncBatchSize = 200;
+
+    /**
+     * 目标库连接池最大连接数（每个子任务）
+     */
+    private int poolMaxActive = 4;
+
+    /**
+     * 事务模式：每批数据与binlog位点在同一个目标库事务中提交，恢复时跳过已写入的事件
+     */
+    private boolean transactional = false;
+
+    /**
+     * 快照阶段批量导入：快照读取的行(op=r)按表攒成TSV，通过LOAD DATA LOCAL INFILE写入目标表，
+     * 该表收到第一条binlog事件后切换回逐行写入
+     */
+    private boolean bulkLoad = false;
+
+    /**
+     * 批量导入每个目标表攒批的最大行数
+     */
+    private int bulkLoadRows = 50000;
+
+    /**
+     * 批量导入每个目标表攒批的最大字节数
+     */
+    private long bulkLoadBytes = 64L * 1024 * 1024;
+
+    /**
+     * 批量导入攒批最长等待时间（毫秒）
+     */
+    private long bulkLoadLingerMs = 10000;
+
+    /**
+     * 快照阶段写入时放宽的目标库会话变量，如{"unique_checks":0,"foreign_key_checks":0}，为空表示不调整；
+     * 设置后快照批次在一个事务中提交，写完即恢复为全局默认值
+     * 启动选项中snapshotProfile=true时使用默认的放宽设置，也可以通过snapshotSession自定义
+     */
+    private LinkedHashMap<String, String> snapshotSession = new LinkedHashMap<>();
+
+    /**
+     * 源表结构变更（DDL）同步到目标表的策略：ignore、safe（默认，只执行不丢数据的ALTER和CREATE INDEX）、all
+     */
+    private SchemaChangePolicy schemaChangePolicy = SchemaChangePolicy.SAFE;
+
+    /**
+     * 实际使用的连接池最大连接数，异步写入时至少为写入线程数
+     */
+    public int getEffectivePoolMaxActive() {
+        return isAsyncApply() ? Math.max(poolMaxActive, asyncLanes) : poolMaxActive;
+    }
+
+    /**
+     * 是否启用异步写入（事务模式需要按位点顺序提交，不支持异步写入）
+     */
+    public boolean isAsyncApply() {
+        return asyncApply && !transactional;
+    }
+
+    /**
+     * 是否启用攒批写入（事务模式总是攒批）
+     */
+    public boolean isBuffered() {
+        return batchSize > 1 || transactional;
+    }
+
+    /**
+     * 是否启用快照阶段批量导入（事务模式从指定位点启动，没有快照阶段；
+     * 异步写入在写入线程返回后即确认事件，攒在导入缓冲中的快照行可能在checkpoint后丢失，不支持批量导入）
+     */
+    public boolean isBulkLoad() {
+        return bulkLoad && !transactional && !isAsyncApply();
+    }
+
+    /**
+     * 从任务启动选项JSON中解析Sink配置，解析失败时使用默认值
+     *
+     * @param startupOptions 启动选项JSON
+     * @return Sink配置
+     */
+    public static SinkOptions fromStartupOptions(String startupOptions) {
+        SinkOptions options = new SinkOptions();
+        if (StringUtils.isEmpty(startupOptions)) {
+            return options;
+        }
+        try {
+            JSONObject sink = JSON.parseObject(startupOptions).getJSONObject("sink");
+            if (sink == null) {
+                return options;
+            }
+            if (sink.containsKey("batchSize")) {
+                options.setBatchSize(sink.getIntValue("batchSize"));
+            }
+            if (sink.containsKey("batchBytes")) {
+                options.setBatchBytes(sink.getLongValue("batchBytes"));
+            }
+            if (sink.containsKey("lingerMs")) {
+                options.setLingerMs(Math.max(10, sink.getLongValue("lingerMs")));
+            }
+            if (sink.containsKey("adaptiveBatch")) {
+                options.setAdaptiveBatch(sink.getBooleanValue("adaptiveBatch"));
+            }
+            if (sink.containsKey("targetFlushMs")) {
+                options.setTargetFlushMs(Math.max(1, sink.getLongValue("targetFlushMs")));
+            }
+            if (sink.containsKey("minBatchSize")) {
+                options.setMinBatchSize(Math.max(1, sink.getIntValue("minBatchSize")));
+            }
+            if (sink.containsKey("maxBatchSize")) {
+                options.setMaxBatchSize(Math.max(1, sink.getIntValue("maxBatchSize")));
+            }
+            if (sink.containsKey("maxRowsPerStatement")) {
+                options.setMaxRowsPerStatement(Math.max(1, sink.getIntValue("maxRowsPerStatement")));
+            }
+            if (sink.containsKey("maxStatementBytes")) {
+                options.setMaxStatementBytes(sink.getLongValue("maxStatementBytes"));
+            }
+            if (sink.containsKey("maxDeleteBatch")) {
+                options.setMaxDeleteBatch(Math.max(1, sink.getIntValue("maxDeleteBatch")));
+            }
+            if (sink.containsKey("updateChangedColumns")) {
+                options.setUpdateChangedColumns(sink.getBooleanValue("updateChangedColumns"));
+            }
+            if (sink.containsKey("compaction")) {
+                options.setCompaction(sink.getBooleanValue("compaction"));
+            }
+            if (sink.containsKey("transactional")) {
+                options.setTransactional(sink.getBooleanValue("transactional"));
+            }
+            if (sink.containsKey("asyncApply")) {
+                options.setAsyncApply(sink.getBooleanValue("asyncApply"));
+            }
+            if (sink.containsKey("asyncLanes")) {
+                options.setAsyncLanes(Math.max(1, sink.getIntValue("asyncLanes")));
+            }
+            if (sink.containsKey("asyncCapacity")) {
+                options.setAsyncCapacity(Math.max(1, sink.getIntValue("asyncCapacity")));
+            }
+            if (sink.containsKey("asyncTimeoutMs")) {
+                options.setAsyncTimeoutMs(Math.max(1000, sink.getLongValue("asyncTimeoutMs")));
+            }
+            if (sink.containsKey("asyncBatchSize")) {
+                options.setAsyncBatchSize(Math.max(1, sink.getIntValue("asyncBatchSize")));
+            }
+            if (sink.containsKey("parallelism")) {
+                options.setParallelism(Math.max(1, sink.getIntValue("parallelism")));
+            }
+            if (sink.containsKey("poolMaxActive")) {
+                options.setPoolMaxActive(Math.max(1, sink.getIntValue("poolMaxActive")));
+            }
+            if (sink.containsKey("bulkLoad")) {
+                options.setBulkLoad(sink.getBooleanValue("bulkLoad"));
+            }
+            if (sink.containsKey("bulkLoadRows")) {
+                options.setBulkLoadRows(Math.max(1, sink.getIntValue("bulkLoadRows")));
+            }
+            if (sink.containsKey("bulkLoadBytes")) {
+                options.setBulkLoadBytes(sink.getLongValue("bulkLoadBytes"));
+            }
+            if (sink.containsKey("bulkLoadLingerMs")) {
+                options.setBulkLoadLingerMs(Math.max(100, sink.getLongValue("bulkLoadLingerMs")));
+            }
+            if (sink.containsKey("schemaChangePolicy")) {
+                SchemaChangePolicy policy = SchemaChangePolicy.of(sink.getString("schemaChangePolicy"));
+                if (policy != null) {
+                    options.setSchemaChangePolicy(policy);
+                } else {
+                    log.warn("忽略不支持的表结构变更策略: {}", sink.getString("schemaChangePolicy"));
+                }
+            }
+            if (sink.getBooleanValue("snapshotProfile")) {
+                options.getSnapshotSession().put("unique_checks", "0");
+                options.getSnapshotSession().put("foreign_key_checks", "0");
+            }
+            JSONObject snapshotSession = sink.getJSONObject("snapshotSession");
+            if (snapshotSession != null) {
+                for (Map.Entry<String, Object> entry : snapshotSession.entrySet()) {
+                    String value = entry.getValue() != null ? entry.getValue().toString() : "";
+                    // 变量名和值直接拼接到SET语句中，只接受标识符和数字
+                    if (SESSION_VARIABLE_PATTERN.matcher(entry.getKey()).matches() && SESSION_VALUE_PATTERN.matcher(value).matches()) {
+                        options.getSnapshotSession().put(entry.getKey(), value);
+                    } else {
+                        log.warn("忽略不合法的快照会话设置: {}={}", entry.getKey(), value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("解析Sink配置异常，使用默认配置: {}", e.getMessage(), e);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,96 @@
+package com.yxq.task.flink;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 待写入目标表的一行变更
+ * UPSERT时columns为写入列，DELETE时columns为条件列，values与columns一一对应；
+ * UPDATE时columns为变更列，keyColumns为条件列，values依次为变更列和条件列的值
+ */
+@Getter
+public class SinkRow {
+
+    /**
+     * 写入类型
+     */
+    public enum Kind {
+        UPSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private final Kind kind;
+
+    /**
+     * 原始CDC操作类型：c/r/u/d
+     */
+    private final String op;
+    private final String sourceTable;
+    private final String targetTable;
+    private final List<String> columns;
+    private final List<Object> values;
+
+    /**
+     * UPDATE的条件列（主键或唯一键），其他类型为null
+     */
+    private final List<String> keyColumns;
+
+    /**
+     * UPDATE未命中目标行或需要与其他变更合并时使用的完整upsert，其他类型为null
+     */
+    private final SinkRow fallback;
+
+    /**
+     * 行主键值，用于缓冲区内按主键合并，未知时为null
+     */
+    private final Object key;
+
+    /**
+     * 预估字节数，用于攒批按字节数刷新
+     */
+    private final long bytes;
+
+    public SinkRow(Kind kind, String op, String sourceTable, String targetTable, Object key, List<String> columns, List<Object> values) {
+        this(kind, op, sourceTable, targetTable, key, columns, null, values, null);
+    }
+
+    /**
+     * 只更新变更列的UPDATE
+     */
+    public SinkRow(String sourceTable, String targetTable, Object key, List<String> columns, List<String> keyColumns,
+                   List<Object> values, SinkRow fallback) {
+        this(Kind.UPDATE, "u", sourceTable, targetTable, key, columns, keyColumns, values, fallback);
+    }
+
+    private SinkRow(Kind kind, String op, String sourceTable, String targetTable, Object key, List<String> columns,
+                    List<String> keyColumns, List<Object> values, SinkRow fallback) {
+        this.kind = kind;
+        this.op = op;
+        this.sourceTable = sourceTable;
+        this.targetTable = targetTable;
+        this.key = key;
+        this.columns = columns;
+        this.values = values;
+        this.keyColumns = keyColumns;
+        this.fallback = fallback;
+        long size = 0;
+        for (Object value : values) {
+            size += value == null ? 4 : value instanceof byte[] ? ((byte[]) value).length : value.toString().length();
+        }
+        this.bytes = size;
+    }
+
+    /**
+     * 是否为修改了主键的UPDATE（条件列为旧主键，行主键置空，完整镜像中为新主键）
+     */
+    public boolean isKeyChange() {
+        return kind == Kind.UPDATE && key == null && fallback != null && fallback.getKey() != null;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + targetTable + " " + columns + " " + values;
+    }
+}
@@ -0,0 +1,252 @@
+package com.yxq.task.flink;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 快照阶段批量导入
+ * 快照读取的行按目标表攒批，编码为内存中的TSV并通过LOAD DATA LOCAL INFILE写入（REPLACE语义，重复导入是幂等的），
+ * 数据直接从内存流发送，不落盘；目标表收到第一条binlog事件后切换回逐行写入
+ */
+@Slf4j
+public class SnapshotBulkLoader {
+
+    // DATETIME列的文本格式，保留微秒
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private final DataSource dataSource;
+    private final String targetDb;
+    private final int maxRows;
+    private final long maxBytes;
+    private final SnapshotSessionProfile sessionProfile;
+
+    // 目标表 -> 待导入的快照行
+    private final Map<String, PendingBatch> pending = new HashMap<>();
+
+    // 已进入binlog阶段的目标表
+    private final Set<String> binlogTables = new HashSet<>();
+
+    public SnapshotBulkLoader(DataSource dataSource, String targetDb, int maxRows, long maxBytes,
+                              SnapshotSessionProfile sessionProfile) {
+        this.dataSource = dataSource;
+        this.targetDb = targetDb;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.sessionProfile = sessionProfile;
+    }
+
+    /**
+     * 目标表是否仍处于快照阶段
+     */
+    public synchronized boolean isSnapshotPhase(String targetTable) {
+        return !binlogTables.contains(targetTable);
+    }
+
+    /**
+     * 加入一行快照数据
+     *
+     * @param row 快照行
+     * @return 达到阈值或列集合变化时需要导入的批次，否则返回null
+     */
+    public synchronized List<SinkRow> add(SinkRow row) {
+        PendingBatch batch = pending.computeIfAbsent(row.getTargetTable(), k -> new PendingBatch());
+        List<SinkRow> ready = null;
+        if (!batch.rows.isEmpty() && !batch.rows.get(0).getColumns().equals(row.getColumns())) {
+            ready = batch.drain();
+        }
+        batch.add(row);
+        if (ready == null && (batch.rows.size() >= maxRows || batch.bytes >= maxBytes)) {
+            ready = batch.drain();
+        }
+        return ready;
+    }
+
+    /**
+     * 目标表进入binlog阶段，取出剩余的快照行
+     *
+     * @param targetTable 目标表
+     * @return 剩余的快照行，没有时返回null
+     */
+    public synchronized List<SinkRow> finishSnapshot(String targetTable) {
+        if (!binlogTables.add(targetTable)) {
+            return null;
+        }
+        PendingBatch batch = pending.remove(targetTable);
+        log.info("目标表[{}]快照阶段结束，切换为逐行写入", targetTable);
+        return batch != null && !batch.rows.isEmpty() ? batch.drain() : null;
+    }
+
+    /**
+     * 取出等待时间超过lingerMs的批次，lingerMs小于0时取出所有批次
+     */
+    public synchronized List<List<SinkRow>> drainExpired(long lingerMs) {
+        List<List<SinkRow>> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (PendingBatch batch : pending.values()) {
+            if (!batch.rows.isEmpty() && (lingerMs < 0 || now - batch.firstTime >= lingerMs)) {
+                result.add(batch.drain());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过LOAD DATA LOCAL INFILE导入一批快照行（所有行属于同一目标表且列集合相同）
+     * LOCAL导入时数据错误（截断、类型转换、跳过的行等）只产生警告，导入后检查警告和影响行数，
+     * 有警告或行数不符时抛出异常，由调用方按普通写入重放这一批
+     *
+     * @param rows 快照行
+     * @return 导入的TSV字节数
+     */
+    public long load(List<SinkRow> rows) throws SQLException {
+        SinkRow first = rows.get(0);
+        byte[] data = encode(rows);
+        String sql = buildSql(first.getTargetTable(), first.getColumns());
+        long start = System.currentTimeMillis();
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            sessionProfile.apply(conn);
+            try {
+                stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(data));
+                stmt.execute(sql);
+                checkResult(first.getTargetTable(), rows.size(), stmt.getUpdateCount(), stmt.getWarnings());
+            } finally {
+                sessionProfile.restore(conn);
+            }
+        }
+        log.debug("表[{}]批量导入完成，行数: {}, 字节数: {}, 耗时: {}ms",
+                first.getTargetTable(), rows.size(), data.length, System.currentTimeMillis() - start);
+        return data.length;
+    }
+
+    /**
+     * 检查导入结果：REPLACE时被替换的行计为删除和插入两行，影响行数应在[行数, 2*行数]之间
+     */
+    private static void checkResult(String targetTable, int rowCount, int updateCount, SQLWarning warning) throws SQLException {
+        if (warning == null && updateCount >= rowCount && updateCount <= 2L * rowCount) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("表[").append(targetTable).append("]批量导入结果异常，行数: ")
+                .append(rowCount).append(", 影响行数: ").append(updateCount);
+        for (int i = 0; warning != null && i < 3; i++, warning = warning.getNextWarning()) {
+            message.append("; ").append(warning.getMessage());
+        }
+        throw new SQLException(message.toString());
+    }
+
+    private String buildSql(String targetTable, List<String> columns) {
+        StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'snapshot.tsv' REPLACE INTO TABLE `")
+                .append(targetDb).append("`.`").append(targetTable).append("` CHARACTER SET utf8mb4 ")
+                .append("FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(",");
+            }
+            sql.append("`").append(columns.get(i)).append("`");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * 编码为TSV：NULL写作\N，反斜杠、制表符、换行、回车和NUL转义
+     */
+    private static byte[] encode(List<SinkRow> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (SinkRow row : rows) {
+            List<Object> values = row.getValues();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    out.write('\t');
+                }
+                Object value = values.get(i);
+                if (value == null) {
+                    out.write('\\');
+                    out.write('N');
+                } else if (value instanceof byte[]) {
+                    writeEscaped(out, (byte[]) value);
+                } else if (value instanceof Boolean) {
+                    out.write((Boolean) value ? '1' : '0');
+                } else if (value instanceof BigDecimal) {
+                    writeEscaped(out, ((BigDecimal) value).toPlainString().getBytes(StandardCharsets.UTF_8));
+                } else if (value instanceof LocalDateTime) {
+                    writeEscaped(out, DATE_TIME_FORMATTER.format((LocalDateTime) value).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    writeEscaped(out, value.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, byte[] bytes) {
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\':
+                    out.write('\\');
+                    out.write('\\');
+                    break;
+                case '\t':
+                    out.write('\\');
+                    out.write('t');
+                    break;
+                case '\n':
+                    out.write('\\');
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('\\');
+                    out.write('r');
+                    break;
+                case 0:
+                    out.write('\\');
+                    out.write('0');
+                    break;
+                default:
+                    out.write(b);
+            }
+        }
+    }
+
+    /**
+     * 单个目标表待导入的快照行
+     */
+    private static class PendingBatch {
+        private List<SinkRow> rows = new ArrayList<>();
+        private long bytes;
+        private long firstTime;
+
+        void add(SinkRow row) {
+            if (rows.isEmpty()) {
+                firstTime = System.currentTimeMillis();
+            }
+            rows.add(row);
+            bytes += row.getBytes();
+        }
+
+        List<SinkRow> drain() {
+            List<SinkRow> result = rows;
+            rows = new ArrayList<>();
+            bytes = 0;
+            return result;
+        }
+    }
+}
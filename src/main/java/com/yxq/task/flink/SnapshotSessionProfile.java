@@ -0,0 +1,82 @@
+package com.yxq.task.flink;
+
+import com.alibaba.druid.pool.DruidPooledConnection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * 快照阶段的目标库会话设置
+ * 写入快照数据前在连接上放宽会话变量（如unique_checks、foreign_key_checks），写完后恢复为全局默认值再归还连接池，
+ * binlog阶段的写入始终使用严格设置
+ */
+@Slf4j
+public class SnapshotSessionProfile {
+
+    private final Map<String, String> settings;
+    private final String applySql;
+    private final String restoreSql;
+
+    public SnapshotSessionProfile(Map<String, String> settings) {
+        this.settings = settings;
+        StringBuilder apply = new StringBuilder("SET ");
+        StringBuilder restore = new StringBuilder("SET ");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : settings.entrySet()) {
+            if (!first) {
+                apply.append(", ");
+                restore.append(", ");
+            }
+            first = false;
+            apply.append("SESSION ").append(entry.getKey()).append("=").append(entry.getValue());
+            restore.append("SESSION ").append(entry.getKey()).append("=DEFAULT");
+        }
+        this.applySql = apply.toString();
+        this.restoreSql = restore.toString();
+    }
+
+    public boolean isEmpty() {
+        return settings.isEmpty();
+    }
+
+    /**
+     * 在连接上应用快照阶段会话设置
+     */
+    public void apply(Connection conn) throws SQLException {
+        if (settings.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(applySql);
+        }
+    }
+
+    /**
+     * 恢复连接的会话设置，恢复失败时关闭物理连接，避免放宽的设置随连接回到连接池
+     */
+    public void restore(Connection conn) {
+        if (settings.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(restoreSql);
+        } catch (SQLException e) {
+            log.warn("恢复目标库会话设置失败，关闭该连接: {}", e.getMessage());
+            try {
+                if (conn instanceof DruidPooledConnection) {
+                    ((DruidPooledConnection) conn).getConnection().close();
+                }
+            } catch (SQLException ex) {
+                log.warn("关闭目标库连接失败: {}", ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return settings.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+
+/**
+ * CDC源读取配置
+ * 来源于任务启动选项(SyncTask.startupOptions)中的source节点，例如：
+ * {"type":"initial","source":{"shared":true,"sharedQueueSize":8192}}
+ * {"type":"initial","source":{"snapshot":true,"snapshotParallelism":4,"splitSize":8096,"fetchSize":1024,"serverId":"5400-5403"}}
+ */
+@Slf4j
+@Data
+public class SourceOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 共享binlog读取：同一源库的任务共用一个binlog连接，解析后按表分发到各任务；
+     * 默认关闭，任务单独建立binlog连接，需要时通过{"source":{"shared":true}}开启
+     */
+    private boolean shared = false;
+
+    /**
+     * 共享读取时每个任务的事件队列容量，队列满时共享读取暂停等待
+     */
+    private int sharedQueueSize = 8192;
+
+    /**
+     * 启动时先对源表做增量快照（按主键分块并行读取），再从快照结束位置读取binlog；
+     * 关闭时直接读取binlog。事务模式下已有提交位点时从位点恢复，不再做快照
+     */
+    private boolean snapshot = false;
+
+    /**
+     * 快照阶段的读取并行度，多个读取器并发读取不同的分块，binlog阶段只有一个读取器
+     */
+    private int snapshotParallelism = 1;
+
+    /**
+     * 快照分块的行数
+     */
+    private int splitSize = 8096;
+
+    /**
+     * 快照读取每次从源库获取的行数
+     */
+    private int fetchSize = 1024;
+
+    /**
+     * 分块元数据按组下发给读取器，每组的分块数
+     */
+    private int splitMetaGroupSize = 1000;
+
+    /**
+     * 指定server id区间（如"5400-5403"），大小不能小于读取并行度，为空时自动分配
+     */
+    private String serverId;
+
+    /**
+     * 是否使用共享binlog读取（需要快照的任务单独读取）
+     */
+    public boolean isShared() {
+        return shared && !snapshot;
+    }
+
+    /**
+     * 实际的读取并行度，不做快照时只有binlog读取器
+     */
+    public int getSourceParallelism() {
+        return snapshot ? snapshotParallelism : 1;
+    }
+
+    /**
+     * 从任务启动选项JSON中解析源读取配置，解析失败时使用默认值
+     *
+     * @param startupOptions 启动选项JSON
+     * @return 源读取配置
+     */
+    public static SourceOptions fromStartupOptions(String startupOptions) {
+        SourceOptions options = new SourceOptions();
+        if (StringUtils.isEmpty(startupOptions)) {
+            return options;
+        }
+        try {
+            JSONObject source = JSON.parseObject(startupOptions).getJSONObject("source");
+            if (source == null) {
+                return options;
+            }
+            if (source.containsKey("shared")) {
+                options.setShared(source.getBooleanValue("shared"));
+            }
+            if (source.containsKey("sharedQueueSize")) {
+                options.setSharedQueueSize(Math.max(16, source.getIntValue("sharedQueueSize")));
+            }
+            if (source.containsKey("snapshot")) {
+                options.setSnapshot(source.getBooleanValue("snapshot"));
+            }
+            if (source.containsKey("snapshotParallelism")) {
+                options.setSnapshotParallelism(Math.max(1, Math.min(64, source.getIntValue("snapshotParallelism"))));
+            }
+            if (source.containsKey("splitSize")) {
+                options.setSplitSize(Math.max(1, source.getIntValue("splitSize")));
+            }
+            if (source.containsKey("fetchSize")) {
+                options.setFetchSize(Math.max(1, source.getIntValue("fetchSize")));
+            }
+            if (source.containsKey("splitMetaGroupSize")) {
+                options.setSplitMetaGroupSize(Math.max(1, source.getIntValue("splitMetaGroupSize")));
+            }
+            if (StringUtils.isNotEmpty(source.getString("serverId"))) {
+                options.setServerId(source.getString("serverId").trim());
+            }
+        } catch (Exception e) {
+            log.error("解析源读取配置异常，使用默认配置: {}", e.getMessage(), e);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,190 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 参数化SQL模板缓存
+ * 按（目标表，列集合，操作类型）缓存带?占位符的SQL，配合服务端预编译和驱动语句缓存使用，
+ * 表结构变更时按表失效。只含变更列的UPDATE每种变更列组合都是一个模板，每个表按最近使用保留有限个模板
+ */
+@Slf4j
+public class SqlTemplateCache {
+
+    // 每个目标表最多缓存的模板数
+    private static final int MAX_TEMPLATES_PER_TABLE = 128;
+
+    private final String targetDb;
+
+    // 目标表 -> (操作类型+列集合 -> SQL模板)
+    private final Map<String, Map<List<Object>, String>> cache = new ConcurrentHashMap<>();
+
+    public SqlTemplateCache(String targetDb) {
+        this.targetDb = targetDb;
+    }
+
+    /**
+     * 获取行变更对应的SQL模板
+     *
+     * @param row 行变更
+     * @return SQL模板
+     */
+    public String getSql(SinkRow row) {
+        Map<List<Object>, String> tableCache = cache.computeIfAbsent(row.getTargetTable(), k -> newTableCache());
+        return tableCache.computeIfAbsent(Arrays.asList(row.getKind(), row.getColumns(), row.getKeyColumns()), k -> buildSql(row, 1));
+    }
+
+    /**
+     * 获取多行合并的SQL：INSERT ... VALUES (...),(...) ON DUPLICATE KEY UPDATE，
+     * 或 DELETE ... WHERE key IN (...)（联合主键使用 (a,b) IN ((?,?),...)）
+     * 只缓存常用的行数（如满批），避免为每种行数都缓存一份长SQL
+     *
+     * @param row 任一参与合并的行（用于确定表和列）
+     * @param rowCount 合并的行数
+     * @param cacheable 是否缓存
+     * @return SQL模板
+     */
+    public String getMultiRowSql(SinkRow row, int rowCount, boolean cacheable) {
+        if (rowCount == 1) {
+            return getSql(row);
+        }
+        if (!cacheable) {
+            return buildSql(row, rowCount);
+        }
+        Map<List<Object>, String> tableCache = cache.computeIfAbsent(row.getTargetTable(), k -> newTableCache());
+        return tableCache.computeIfAbsent(Arrays.asList(row.getKind(), row.getColumns(), rowCount), k -> buildSql(row, rowCount));
+    }
+
+    /**
+     * 按最近使用淘汰的表级模板缓存
+     */
+    private static Map<List<Object>, String> newTableCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<List<Object>, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+                return size() > MAX_TEMPLATES_PER_TABLE;
+            }
+        });
+    }
+
+    /**
+     * 使指定表的SQL模板失效
+     *
+     * @param targetTable 目标表名
+     */
+    public void invalidate(String targetTable) {
+        if (cache.remove(targetTable) != null) {
+            log.info("目标表[{}]的SQL模板缓存已失效", targetTable);
+        }
+    }
+
+    /**
+     * 使所有SQL模板失效
+     */
+    public void invalidateAll() {
+        cache.clear();
+        log.info("所有SQL模板缓存已失效");
+    }
+
+    /**
+     * 缓存的SQL模板数量
+     */
+    public int size() {
+        int size = 0;
+        for (Map<List<Object>, String> tableCache : cache.values()) {
+            size += tableCache.size();
+        }
+        return size;
+    }
+
+    private String buildSql(SinkRow row, int rowCount) {
+        String table = "`" + targetDb + "`.`" + row.getTargetTable() + "`";
+        List<String> columns = row.getColumns();
+        StringBuilder sql = new StringBuilder();
+        if (row.getKind() == SinkRow.Kind.DELETE && rowCount > 1) {
+            sql.append("DELETE FROM ").append(table).append(" WHERE ");
+            StringBuilder tuple = new StringBuilder();
+            if (columns.size() > 1) {
+                sql.append("(");
+                tuple.append("(");
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(",");
+                    tuple.append(",");
+                }
+                sql.append("`").append(columns.get(i)).append("`");
+                tuple.append("?");
+            }
+            if (columns.size() > 1) {
+                sql.append(")");
+                tuple.append(")");
+            }
+            sql.append(" IN (");
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                sql.append(tuple);
+            }
+            sql.append(")");
+        } else if (row.getKind() == SinkRow.Kind.UPDATE) {
+            sql.append("UPDATE ").append(table).append(" SET ");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                sql.append("`").append(columns.get(i)).append("`=?");
+            }
+            sql.append(" WHERE ");
+            List<String> keyColumns = row.getKeyColumns();
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) {
+                    sql.append(" AND ");
+                }
+                sql.append("`").append(keyColumns.get(i)).append("`=?");
+            }
+        } else if (row.getKind() == SinkRow.Kind.DELETE) {
+            sql.append("DELETE FROM ").append(table).append(" WHERE ");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(" AND ");
+                }
+                sql.append("`").append(columns.get(i)).append("`=?");
+            }
+        } else {
+            StringBuilder placeholders = new StringBuilder();
+            StringBuilder updates = new StringBuilder();
+            sql.append("INSERT INTO ").append(table).append(" (");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(",");
+                    placeholders.append(",");
+                    updates.append(",");
+                }
+                String column = "`" + columns.get(i) + "`";
+                sql.append(column);
+                placeholders.append("?");
+                updates.append(column).append("=VALUES(").append(column).append(")");
+            }
+            sql.append(") VALUES ");
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                sql.append("(").append(placeholders).append(")");
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE ").append(updates);
+        }
+        log.debug("生成SQL模板, 行数: {}, 长度: {}", rowCount, sql.length());
+        return sql.toString();
+    }
+}
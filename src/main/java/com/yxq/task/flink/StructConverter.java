@@ -0,0 +1,202 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.debezium.time.MicroTime;
+import io.debezium.time.MicroTimestamp;
+import io.debezium.time.NanoTime;
+import io.debezium.time.NanoTimestamp;
+import io.debezium.time.ZonedTimestamp;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 按Schema预编译的行转换器
+ * 首次遇到某个Schema时按字段类型和Debezium逻辑类型确定每个字段的转换方式，之后按字段下标依次取值转换，
+ * 不再逐条记录判断类型和列裁剪；表结构变化后Debezium生成新的Schema对象，转换器随之重新生成。
+ * 日期时间按逻辑类型转换为java.time对象：DATE为LocalDate，DATETIME为LocalDateTime（Debezium按UTC编码，不做时区换算），
+ * TIMESTAMP为源库时区的LocalDateTime；TIME可能为负数或超过24小时，转换为HH:mm:ss[.ffffff]格式的文本
+ */
+public class StructConverter {
+
+    private final String[] columns;
+    private final Field[] fields;
+    // 字段转换器，null表示直接使用原值
+    private final ValueConverter[] converters;
+
+    /**
+     * @param schema 行数据的Schema
+     * @param columnFilter 表同步配置，为null时不裁剪
+     * @param serverZone 源库时区，用于转换TIMESTAMP类型
+     */
+    public StructConverter(Schema schema, TableSyncConfig columnFilter, ZoneId serverZone) {
+        List<Field> included = new ArrayList<>(schema.fields().size());
+        for (Field field : schema.fields()) {
+            if (columnFilter == null || columnFilter.isColumnIncluded(field.name())) {
+                included.add(field);
+            }
+        }
+        fields = included.toArray(new Field[0]);
+        columns = new String[fields.length];
+        converters = new ValueConverter[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = fields[i].name();
+            converters[i] = createConverter(fields[i], serverZone);
+        }
+    }
+
+    /**
+     * 需要同步的列名，与convert返回的值一一对应
+     */
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * 转换一行数据
+     *
+     * @param struct 行数据，Schema必须与创建转换器时的Schema相同
+     * @return 列值
+     */
+    public Object[] convert(Struct struct) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = struct.get(fields[i]);
+            values[i] = value == null || converters[i] == null ? value : converters[i].convert(value);
+        }
+        return values;
+    }
+
+    private static ValueConverter createConverter(Field field, ZoneId serverZone) {
+        String logicalName = field.schema().name();
+        if (logicalName != null) {
+            switch (logicalName) {
+                case io.debezium.time.Date.SCHEMA_NAME:
+                    return value -> LocalDate.ofEpochDay(((Number) value).longValue());
+                case io.debezium.time.Timestamp.SCHEMA_NAME:
+                    return value -> toLocalDateTime(((Number) value).longValue(), 1_000L);
+                case MicroTimestamp.SCHEMA_NAME:
+                    return value -> toLocalDateTime(((Number) value).longValue(), 1_000_000L);
+                case NanoTimestamp.SCHEMA_NAME:
+                    return value -> toLocalDateTime(((Number) value).longValue(), 1_000_000_000L);
+                case ZonedTimestamp.SCHEMA_NAME:
+                    // ISO-8601格式的UTC时间，转换为源库时区的本地时间
+                    return value -> OffsetDateTime.parse((String) value).atZoneSameInstant(serverZone).toLocalDateTime();
+                case io.debezium.time.Time.SCHEMA_NAME:
+                    return value -> formatTime(((Number) value).longValue() * 1_000_000L);
+                case MicroTime.SCHEMA_NAME:
+                    return value -> formatTime(((Number) value).longValue() * 1_000L);
+                case NanoTime.SCHEMA_NAME:
+                    return value -> formatTime(((Number) value).longValue());
+                // time.precision.mode=connect时的Kafka Connect逻辑类型，值为UTC的java.util.Date
+                case org.apache.kafka.connect.data.Date.LOGICAL_NAME:
+                    return value -> ((Date) value).toInstant().atOffset(ZoneOffset.UTC).toLocalDate();
+                case org.apache.kafka.connect.data.Timestamp.LOGICAL_NAME:
+                    return value -> ((Date) value).toInstant().atOffset(ZoneOffset.UTC).toLocalDateTime();
+                case org.apache.kafka.connect.data.Time.LOGICAL_NAME:
+                    return value -> formatTime(((Date) value).getTime() * 1_000_000L);
+                // decimal.handling.mode=precise时值为BigDecimal，保持原值
+                case Decimal.LOGICAL_NAME:
+                    return null;
+                default:
+                    break;
+            }
+        }
+        switch (field.schema().type()) {
+            // 处理复杂类型字段，转换为JSON字符串
+            case STRUCT:
+                return value -> toJson((Struct) value).toJSONString();
+            case MAP:
+            case ARRAY:
+                return JSON::toJSONString;
+            // 二进制数据，binary.handling.mode=bytes时值为ByteBuffer或byte[]
+            case BYTES:
+                return StructConverter::toBytes;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 按UTC把纪元时间转换为本地时间
+     *
+     * @param value 纪元时间
+     * @param unitsPerSecond 每秒的单位数（毫秒为1000）
+     */
+    private static LocalDateTime toLocalDateTime(long value, long unitsPerSecond) {
+        long seconds = Math.floorDiv(value, unitsPerSecond);
+        long nanos = Math.floorMod(value, unitsPerSecond) * (1_000_000_000L / unitsPerSecond);
+        return LocalDateTime.ofEpochSecond(seconds, (int) nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * 把TIME值（纳秒）格式化为MySQL的TIME文本，支持负数和超过24小时
+     */
+    static String formatTime(long nanos) {
+        StringBuilder text = new StringBuilder(16);
+        if (nanos < 0) {
+            text.append('-');
+            nanos = -nanos;
+        }
+        long seconds = nanos / 1_000_000_000L;
+        long micros = nanos % 1_000_000_000L / 1_000L;
+        long hours = seconds / 3600;
+        appendTwoDigits(text, hours).append(':');
+        appendTwoDigits(text, seconds / 60 % 60).append(':');
+        appendTwoDigits(text, seconds % 60);
+        if (micros > 0) {
+            String fraction = String.valueOf(1_000_000L + micros).substring(1);
+            text.append('.').append(fraction);
+        }
+        return text.toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder text, long value) {
+        if (value < 10) {
+            text.append('0');
+        }
+        return text.append(value);
+    }
+
+    private static Object toBytes(Object value) {
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        return value;
+    }
+
+    /**
+     * 将嵌套的Struct转换为JSONObject
+     */
+    private static JSONObject toJson(Struct struct) {
+        JSONObject json = new JSONObject();
+        for (Field field : struct.schema().fields()) {
+            Object value = struct.get(field);
+            json.put(field.name(), value instanceof Struct ? toJson((Struct) value) : value);
+        }
+        return json;
+    }
+
+    /**
+     * 单个字段的转换
+     */
+    @FunctionalInterface
+    private interface ValueConverter {
+        Object convert(Object value);
+    }
+}
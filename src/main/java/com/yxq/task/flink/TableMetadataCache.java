@@ -0,0 +1,249 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 目标表元数据缓存
+ * 通过一次information_schema查询加载所有映射目标表的列顺序、列类型、主键和唯一键，
+ * 删除条件、合并主键和参数类型都以此为准，收到表结构变更时刷新
+ */
+@Slf4j
+public class TableMetadataCache {
+
+    private static final String QUERY_SQL = "SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_TYPE, s.INDEX_NAME " +
+            "FROM information_schema.COLUMNS c " +
+            "LEFT JOIN information_schema.STATISTICS s ON s.TABLE_SCHEMA = c.TABLE_SCHEMA " +
+            "AND s.TABLE_NAME = c.TABLE_NAME AND s.COLUMN_NAME = c.COLUMN_NAME AND s.NON_UNIQUE = 0 " +
+            "WHERE c.TABLE_SCHEMA = ? AND c.TABLE_NAME IN (%s) " +
+            "ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION, s.INDEX_NAME, s.SEQ_IN_INDEX";
+
+    // 加载失败后重试的最短和最长间隔（毫秒），连续失败时间隔翻倍
+    private static final long RETRY_MIN_MS = 1000;
+    private static final long RETRY_MAX_MS = 60000;
+
+    private final DataSource dataSource;
+    private final String targetDb;
+
+    // 目标表 -> 元数据
+    private final Map<String, TableMetadata> cache = new ConcurrentHashMap<>();
+
+    // 已查询过但目标库中不存在的表，避免每个事件都重新查询
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    // 加载失败的表 -> 下次重试时间和当前重试间隔，重试前按无元数据处理
+    private final Map<String, long[]> retries = new ConcurrentHashMap<>();
+
+    public TableMetadataCache(DataSource dataSource, String targetDb) {
+        this.dataSource = dataSource;
+        this.targetDb = targetDb;
+    }
+
+    /**
+     * 获取目标表元数据，未加载过的表（如未配置映射的表）首次访问时加载，加载失败的表到重试时间后再加载
+     *
+     * @param targetTable 目标表名
+     * @return 元数据，目标库中不存在该表时返回null
+     */
+    public TableMetadata get(String targetTable) {
+        TableMetadata metadata = cache.get(targetTable);
+        if (metadata == null && !missing.contains(targetTable) && isRetryDue(targetTable)) {
+            refresh(targetTable);
+            metadata = cache.get(targetTable);
+        }
+        return metadata;
+    }
+
+    /**
+     * 加载多个目标表的元数据（一次查询）
+     *
+     * @param targetTables 目标表名
+     */
+    public void load(Collection<String> targetTables) {
+        if (targetTables.isEmpty()) {
+            return;
+        }
+        List<String> tables = new ArrayList<>(targetTables);
+        String placeholders = String.join(",", Collections.nCopies(tables.size(), "?"));
+        Map<String, TableMetadata> loaded = new HashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(String.format(QUERY_SQL, placeholders))) {
+            stmt.setString(1, targetDb);
+            for (int i = 0; i < tables.size(); i++) {
+                stmt.setString(i + 2, tables.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    TableMetadata metadata = loaded.computeIfAbsent(rs.getString("TABLE_NAME"), TableMetadata::new);
+                    metadata.addColumn(rs.getString("COLUMN_NAME"), rs.getString("DATA_TYPE"), rs.getString("INDEX_NAME"));
+                }
+            }
+        } catch (SQLException e) {
+            // 加载失败（如临时连接问题）不能确定表是否存在，已缓存的元数据保持不变，未缓存的表按间隔重试
+            for (String table : tables) {
+                long[] retry = retries.computeIfAbsent(table, k -> new long[]{0, RETRY_MIN_MS / 2});
+                retry[1] = Math.min(RETRY_MAX_MS, retry[1] * 2);
+                retry[0] = System.currentTimeMillis() + retry[1];
+            }
+            log.error("加载目标库[{}]表元数据失败，稍后重试，表: {}, 原因: {}", targetDb, tables, e.getMessage(), e);
+            return;
+        }
+        for (String table : tables) {
+            retries.remove(table);
+            TableMetadata metadata = loaded.get(table);
+            if (metadata == null) {
+                cache.remove(table);
+                missing.add(table);
+                log.warn("目标库[{}]中未找到表[{}]的元数据", targetDb, table);
+            } else {
+                cache.put(table, metadata);
+                missing.remove(table);
+                log.info("已加载目标表[{}]元数据, 列数: {}, 主键: {}, 唯一键: {}",
+                        table, metadata.getColumns().size(), metadata.getPrimaryKey(), metadata.uniqueKeys.keySet());
+            }
+        }
+    }
+
+    private boolean isRetryDue(String targetTable) {
+        long[] retry = retries.get(targetTable);
+        return retry == null || System.currentTimeMillis() >= retry[0];
+    }
+
+    /**
+     * 刷新单个目标表的元数据
+     */
+    public void refresh(String targetTable) {
+        load(Collections.singletonList(targetTable));
+    }
+
+    /**
+     * 刷新所有已缓存表的元数据
+     */
+    public void refreshAll() {
+        Set<String> tables = new HashSet<>(cache.keySet());
+        tables.addAll(missing);
+        tables.addAll(retries.keySet());
+        missing.clear();
+        load(tables);
+    }
+
+    /**
+     * 单个目标表的元数据
+     */
+    public static class TableMetadata {
+        private final String tableName;
+        // 列名（按表中顺序） -> 数据类型（小写）
+        private final Map<String, String> columnTypes = new LinkedHashMap<>();
+        private final List<String> primaryKey = new ArrayList<>();
+        // 唯一索引名 -> 列（按索引中顺序）
+        private final Map<String, List<String>> uniqueKeys = new LinkedHashMap<>();
+
+        TableMetadata(String tableName) {
+            this.tableName = tableName;
+        }
+
+        private void addColumn(String column, String dataType, String indexName) {
+            columnTypes.putIfAbsent(column, dataType != null ? dataType.toLowerCase() : null);
+            if (indexName == null) {
+                return;
+            }
+            if ("PRIMARY".equals(indexName)) {
+                primaryKey.add(column);
+            } else {
+                uniqueKeys.computeIfAbsent(indexName, k -> new ArrayList<>()).add(column);
+            }
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public List<String> getColumns() {
+            return new ArrayList<>(columnTypes.keySet());
+        }
+
+        public List<String> getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public boolean hasColumn(String column) {
+            return columnTypes.containsKey(column);
+        }
+
+        public String getColumnType(String column) {
+            return columnTypes.get(column);
+        }
+
+        /**
+         * 是否为日期时间类型列
+         */
+        public boolean isTemporal(String column) {
+            String type = columnTypes.get(column);
+            return "datetime".equals(type) || "timestamp".equals(type) || "date".equals(type) || "time".equals(type);
+        }
+
+        /**
+         * 选择能唯一定位该行的键：优先主键，其次第一个所有列都非空的唯一键
+         *
+         * @param image 行数据
+         * @return 键列，无法确定时返回null
+         */
+        public List<String> findKey(Map<String, Object> image) {
+            if (!primaryKey.isEmpty() && allPresent(primaryKey, image)) {
+                return primaryKey;
+            }
+            for (List<String> uniqueKey : uniqueKeys.values()) {
+                if (allPresent(uniqueKey, image)) {
+                    return uniqueKey;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 提取行的键值，用于缓冲区内按行合并
+         *
+         * @param image 行数据
+         * @return 键值列表，无法确定时返回null
+         */
+        public List<Object> keyOf(Map<String, Object> image) {
+            List<String> key = findKey(image);
+            if (key == null) {
+                return null;
+            }
+            Object[] values = new Object[key.size()];
+            for (int i = 0; i < values.length; i++) {
+                Object value = image.get(key.get(i));
+                // byte[]按内容比较
+                values[i] = value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+            }
+            return Arrays.asList(values);
+        }
+
+        private static boolean allPresent(List<String> columns, Map<String, Object> image) {
+            for (String column : columns) {
+                if (image.get(column) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
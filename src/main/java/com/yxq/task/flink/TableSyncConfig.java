@@ -0,0 +1,136 @@
+package com.yxq.task.flink;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 单个表的同步配置，来源于任务的tables配置，例如：
+ * [{"sourceTable":"t_order","targetTable":"t_order_copy","excludeColumns":"remark,attachment","filter":"status <> 'ARCHIVED'"}]
+ * includeColumns/excludeColumns可以是逗号分隔的字符串或JSON数组，两者同时配置时只使用includeColumns；
+ * filter为行过滤条件，语法见{@link RowFilter}
+ */
+@Data
+public class TableSyncConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String sourceTable;
+    private String targetTable;
+
+    /**
+     * 只同步的列，为空表示全部
+     */
+    private Set<String> includeColumns = new LinkedHashSet<>();
+
+    /**
+     * 不同步的列（排除主键列会导致更新和删除无法定位目标行）
+     */
+    private Set<String> excludeColumns = new LinkedHashSet<>();
+
+    /**
+     * 行过滤条件，为空表示全部
+     */
+    private RowFilter rowFilter;
+
+    /**
+     * 从tables配置项构建
+     *
+     * @param config 配置项
+     * @return 表同步配置
+     */
+    public static TableSyncConfig fromMap(Map<String, String> config) {
+        TableSyncConfig tableConfig = new TableSyncConfig();
+        tableConfig.setSourceTable(config.get("sourceTable"));
+        tableConfig.setTargetTable(config.get("targetTable"));
+        tableConfig.getIncludeColumns().addAll(parseColumns(config.get("includeColumns")));
+        if (tableConfig.getIncludeColumns().isEmpty()) {
+            tableConfig.getExcludeColumns().addAll(parseColumns(config.get("excludeColumns")));
+        }
+        if (StringUtils.isNotBlank(config.get("filter"))) {
+            tableConfig.setRowFilter(RowFilter.compile(config.get("filter").trim()));
+        }
+        return tableConfig;
+    }
+
+    private static List<String> parseColumns(String value) {
+        List<String> columns = new ArrayList<>();
+        if (StringUtils.isBlank(value)) {
+            return columns;
+        }
+        List<String> items = value.trim().startsWith("[")
+                ? JSON.parseArray(value, String.class)
+                : Arrays.asList(value.split(","));
+        for (String item : items) {
+            if (StringUtils.isNotBlank(item)) {
+                columns.add(item.trim());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 是否配置了列裁剪
+     */
+    public boolean hasColumnFilter() {
+        return !includeColumns.isEmpty() || !excludeColumns.isEmpty();
+    }
+
+    /**
+     * 是否配置了行过滤
+     */
+    public boolean hasRowFilter() {
+        return rowFilter != null;
+    }
+
+    /**
+     * 列是否需要同步
+     */
+    public boolean isColumnIncluded(String column) {
+        if (!includeColumns.isEmpty()) {
+            return includeColumns.contains(column);
+        }
+        return !excludeColumns.contains(column);
+    }
+
+    /**
+     * 生成Debezium column.include.list中该表的正则（匹配 库名.表名.列名）
+     * Debezium不允许同时配置include和exclude，排除列用否定前瞻表达；正则中不能出现逗号（列表分隔符）；
+     * 行过滤条件引用的列必须由Debezium读出，即使不同步也保留在正则中，由反序列化时丢弃
+     *
+     * @param dbName 源库名
+     * @return 列正则
+     */
+    public String toColumnRegex(String dbName) {
+        String prefix = Pattern.quote(dbName) + "\\." + Pattern.quote(sourceTable) + "\\.";
+        Set<String> filterColumns = rowFilter != null ? rowFilter.getColumns() : new LinkedHashSet<>();
+        if (!includeColumns.isEmpty()) {
+            Set<String> columns = new LinkedHashSet<>(includeColumns);
+            columns.addAll(filterColumns);
+            return prefix + "(" + quoteAll(columns) + ")";
+        }
+        Set<String> columns = new LinkedHashSet<>(excludeColumns);
+        columns.removeAll(filterColumns);
+        if (!columns.isEmpty()) {
+            return prefix + "(?!(" + quoteAll(columns) + ")$).+";
+        }
+        return prefix + ".+";
+    }
+
+    private static String quoteAll(Set<String> columns) {
+        List<String> quoted = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            quoted.add(Pattern.quote(column));
+        }
+        return String.join("|", quoted);
+    }
+}
@@ -0,0 +1,161 @@
+package com.yxq.task.flink;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 目标库写入限流器
+ * 按目标库（host:port/db）在JVM内共享，所有写入该库的任务共同受每秒行数、每秒字节数和最大并发写入数限制，
+ * 限额来源于cdc_database_config，可在运行时调整，0表示不限制
+ */
+@Slf4j
+public class WriteGovernor {
+
+    // host:port/db -> 限流器
+    private static final ConcurrentHashMap<String, WriteGovernor> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final RateBucket rowBucket = new RateBucket();
+    private final RateBucket byteBucket = new RateBucket();
+
+    private int maxWriters;
+    private int activeWriters;
+
+    // 累计限流等待时间
+    private final AtomicLong throttleMillis = new AtomicLong(0);
+
+    private WriteGovernor(String key) {
+        this.key = key;
+    }
+
+    /**
+     * 获取目标库的限流器，不存在则创建（默认不限制）
+     *
+     * @param host 主机
+     * @param port 端口
+     * @param dbName 数据库名
+     * @return 限流器
+     */
+    public static WriteGovernor get(String host, Integer port, String dbName) {
+        return get(host + ":" + port + "/" + dbName);
+    }
+
+    public static WriteGovernor get(String key) {
+        return REGISTRY.computeIfAbsent(key, WriteGovernor::new);
+    }
+
+    /**
+     * 获取已存在的限流器，不存在时返回null
+     */
+    public static WriteGovernor find(String host, Integer port, String dbName) {
+        return REGISTRY.get(host + ":" + port + "/" + dbName);
+    }
+
+    /**
+     * 调整限额
+     *
+     * @param rowsPerSec 每秒最大写入行数，0或null表示不限制
+     * @param bytesPerSec 每秒最大写入字节数，0或null表示不限制
+     * @param maxConcurrentWriters 最大并发写入数，0或null表示不限制
+     */
+    public void configure(Integer rowsPerSec, Long bytesPerSec, Integer maxConcurrentWriters) {
+        rowBucket.setRate(rowsPerSec != null ? rowsPerSec : 0);
+        byteBucket.setRate(bytesPerSec != null ? bytesPerSec : 0);
+        synchronized (this) {
+            maxWriters = maxConcurrentWriters != null ? maxConcurrentWriters : 0;
+            notifyAll();
+        }
+        log.info("目标库[{}]写入限额: 每秒行数={}, 每秒字节数={}, 最大并发写入数={}",
+                key, rowsPerSec, bytesPerSec, maxConcurrentWriters);
+    }
+
+    /**
+     * 申请写入：先按行数和字节数限速，再占用一个并发写入名额，写入完成后必须调用release()
+     * 等待期间被中断时不再等待，直接占用名额
+     *
+     * @param rows 写入行数
+     * @param bytes 写入字节数
+     * @return 本次限流等待的毫秒数
+     */
+    public long acquire(long rows, long bytes) {
+        long start = System.currentTimeMillis();
+        long wait = Math.max(rowBucket.reserve(rows, start), byteBucket.reserve(bytes, start));
+        try {
+            if (wait > 0) {
+                TimeUnit.MILLISECONDS.sleep(wait);
+            }
+            synchronized (this) {
+                while (maxWriters > 0 && activeWriters >= maxWriters) {
+                    wait(100);
+                }
+                activeWriters++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                activeWriters++;
+            }
+        }
+        long throttled = System.currentTimeMillis() - start;
+        if (throttled > 0) {
+            throttleMillis.addAndGet(throttled);
+        }
+        return throttled;
+    }
+
+    /**
+     * 释放并发写入名额
+     */
+    public synchronized void release() {
+        activeWriters--;
+        notifyAll();
+    }
+
+    /**
+     * 限流器状态
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("target", key);
+        stats.put("maxWriteRowsPerSec", rowBucket.rate);
+        stats.put("maxWriteBytesPerSec", byteBucket.rate);
+        stats.put("maxConcurrentWriters", maxWriters);
+        stats.put("activeWriters", activeWriters);
+        stats.put("throttleMillis", throttleMillis.get());
+        return stats;
+    }
+
+    /**
+     * 令牌桶：每秒补充rate个令牌，最多积攒1秒的量；令牌不足时允许透支，返回需要等待的时间
+     */
+    private static class RateBucket {
+        private volatile long rate;
+        private double available;
+        private long lastRefillTime = System.currentTimeMillis();
+
+        synchronized void setRate(long rate) {
+            this.rate = Math.max(0, rate);
+            this.available = Math.min(available, this.rate);
+        }
+
+        /**
+         * 预占令牌
+         *
+         * @return 需要等待的毫秒数，不限制时为0
+         */
+        synchronized long reserve(long amount, long now) {
+            if (rate <= 0) {
+                return 0;
+            }
+            available = Math.min(rate, available + (now - lastRefillTime) * rate / 1000.0);
+            lastRefillTime = now;
+            available -= amount;
+            return available >= 0 ? 0 : (long) Math.ceil(-available * 1000 / rate);
+        }
+    }
+}
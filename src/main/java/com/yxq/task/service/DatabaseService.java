@@ -81,4 +81,23 @@ public interface DatabaseService {
      * @return 列信息列表
      */
     List<Map<String, String>> getTableColumns(Integer databaseId, String tableName);
+
+    /**
+     * 修改作为目标库时的写入限额，立即对运行中的任务生效
+     *
+     * @param id 数据库ID
+     * @param maxWriteRowsPerSec 每秒最大写入行数，0表示不限制，null表示不修改
+     * @param maxWriteBytesPerSec 每秒最大写入字节数，0表示不限制，null表示不修改
+     * @param maxConcurrentWriters 最大并发写入数，0表示不限制，null表示不修改
+     * @return 修改是否成功
+     */
+    boolean updateWriteLimit(Integer id, Integer maxWriteRowsPerSec, Long maxWriteBytesPerSec, Integer maxConcurrentWriters);
+
+    /**
+     * 获取作为目标库时的写入限流状态
+     *
+     * @param id 数据库ID
+     * @return 限额、当前并发写入数和累计限流等待时间
+     */
+    Map<String, Object> getWriteLimitStatus(Integer id);
 } 
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.yxq.task.service;
 
 import com.yxq.task.entity.SyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 同步任务服务接口
@@ -80,4 +83,16 @@ public interface SyncTaskService {
      * @return 监控统计信息
      */
     Map<String, Object> getTaskStatistics(Integer id);
+
+    /**
+     * 挂载任务事件采样，通过SSE推送最近的CDC事件，连接断开或超时后自动卸载
+     *
+     * @param id 任务ID
+     * @param tables 源表名，为空时不过滤
+     * @param sampleRate 采样率(0, 1]
+     * @param capacity 缓冲区容量，消费跟不上时丢弃最旧的事件
+     * @param timeoutSeconds 采样时长（秒）
+     * @return SSE连接
+     */
+    SseEmitter tapEvents(Integer id, Set<String> tables, double sampleRate, int capacity, long timeoutSeconds);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.yxq.task.service.impl;
 
 import com.yxq.task.dao.DatabaseDao;
 import com.yxq.task.entity.Database;
+import com.yxq.task.flink.WriteGovernor;
 import com.yxq.task.service.DatabaseService;
 import com.yxq.task.util.AESUtil;
 import com.yxq.task.util.DatabaseUtil;
@@ -63,7 +64,12 @@ public class DatabaseServiceImpl implements DatabaseService {
         // 更新时间
         database.setUpdateTime(new Date());
 
-        return databaseDao.update(database) > 0;
+        boolean result = databaseDao.update(database) > 0;
+        if (result && (database.getMaxWriteRowsPerSec() != null || database.getMaxWriteBytesPerSec() != null
+                || database.getMaxConcurrentWriters() != null)) {
+            applyWriteLimit(database.getId());
+        }
+        return result;
     }
 
     @Override
@@ -137,4 +143,50 @@ public class DatabaseServiceImpl implements DatabaseService {
 
         return DatabaseUtil.getTableColumns(database, tableName);
     }
-} 
\ No newline at end of file
+
+    @Override
+    public boolean updateWriteLimit(Integer id, Integer maxWriteRowsPerSec, Long maxWriteBytesPerSec, Integer maxConcurrentWriters) {
+        Database update = new Database();
+        update.setId(id);
+        update.setMaxWriteRowsPerSec(maxWriteRowsPerSec);
+        update.setMaxWriteBytesPerSec(maxWriteBytesPerSec);
+        update.setMaxConcurrentWriters(maxConcurrentWriters);
+        if (databaseDao.update(update) <= 0) {
+            return false;
+        }
+        applyWriteLimit(id);
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getWriteLimitStatus(Integer id) {
+        Database database = databaseDao.selectById(id);
+        if (database == null) {
+            return null;
+        }
+        WriteGovernor governor = WriteGovernor.find(database.getHost(), database.getPort(), database.getDbName());
+        if (governor != null) {
+            return governor.getStats();
+        }
+        // 还没有任务写入该库，只返回配置的限额
+        Map<String, Object> status = new HashMap<>();
+        status.put("target", database.getHost() + ":" + database.getPort() + "/" + database.getDbName());
+        status.put("maxWriteRowsPerSec", database.getMaxWriteRowsPerSec());
+        status.put("maxWriteBytesPerSec", database.getMaxWriteBytesPerSec());
+        status.put("maxConcurrentWriters", database.getMaxConcurrentWriters());
+        status.put("activeWriters", 0);
+        status.put("throttleMillis", 0);
+        return status;
+    }
+
+    /**
+     * 把数据库配置中的写入限额应用到运行中的限流器
+     */
+    private void applyWriteLimit(Integer id) {
+        Database database = databaseDao.selectById(id);
+        if (database != null) {
+            WriteGovernor.get(database.getHost(), database.getPort(), database.getDbName())
+                    .configure(database.getMaxWriteRowsPerSec(), database.getMaxWriteBytesPerSec(), database.getMaxConcurrentWriters());
+        }
+    }
+}
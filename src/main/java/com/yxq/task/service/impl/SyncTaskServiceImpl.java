@@ -1,6 +1,7 @@
 package com.yxq.task.service.impl;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.TypeReference;
 import com.yxq.task.dao.SyncExceptionDao;
 import com.yxq.task.dao.SyncTaskDao;
@@ -9,15 +10,24 @@ import com.yxq.task.entity.Database;
 import com.yxq.task.entity.SyncException;
 import com.yxq.task.entity.SyncStatistics;
 import com.yxq.task.entity.SyncTask;
+import com.yxq.task.flink.EventTap;
 import com.yxq.task.flink.FlinkCDCMain;
 import com.yxq.task.flink.FlinkCDCSink;
+import com.yxq.task.flink.SharedBinlogReader;
 import com.yxq.task.service.DatabaseService;
 import com.yxq.task.service.SyncTaskService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 同步任务服务实现类
@@ -36,6 +46,16 @@ public class SyncTaskServiceImpl implements SyncTaskService {
     
     // 存储运行中的任务
     private static final Map<Integer, Object> RUNNING_TASKS = new HashMap<>();
+
+    // 事件采样推送间隔（毫秒）
+    private static final long TAP_PUSH_INTERVAL_MS = 200;
+
+    // 事件采样推送线程，所有SSE连接共用
+    private static final ScheduledExecutorService TAP_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EventTap-Push");
+        t.setDaemon(true);
+        return t;
+    });
     
     /**
      * 构造方法
@@ -356,6 +376,8 @@ public class SyncTaskServiceImpl implements SyncTaskService {
                     int exceptionCount = 0;
                     int syncCount = 0;
                     Date lastUpdateTime = null;
+                    // 扩展统计信息（批量刷新等），保存在remark字段中
+                    Map<String, Object> extraStats = new HashMap<>();
                     
                     // 首先尝试从数据库获取持久化的统计数据
                     try {
@@ -368,6 +390,9 @@ public class SyncTaskServiceImpl implements SyncTaskService {
                             exceptionCount = stats.getExceptionCount() != null ? stats.getExceptionCount() : 0;
                             syncCount = stats.getSyncCount() != null ? stats.getSyncCount() : 0;
                             lastUpdateTime = stats.getLastUpdateTime();
+                            if (StringUtils.isNotEmpty(stats.getRemark())) {
+                                extraStats.putAll(JSON.parseObject(stats.getRemark()));
+                            }
                             
                             log.debug("从数据库获取任务[{}]表[{}]统计数据: 插入={}, 更新={}, 删除={}", 
                                    task.getTaskName(), sourceTable, insertCount, updateCount, deleteCount);
@@ -378,6 +403,7 @@ public class SyncTaskServiceImpl implements SyncTaskService {
                     
                     // 如果数据库中没有数据或数据可能已过时，并且CDC Sink实例可用，则尝试从实例获取最新数据
                     if (cdcSink != null) {
+                        extraStats.putAll(cdcSink.getTableExtraStats(sourceTable));
                         // 获取CDC Sink中的最新统计数据
                         int sinkInsertCount = cdcSink.getInsertCount(sourceTable);
                         int sinkUpdateCount = cdcSink.getUpdateCount(sourceTable);
@@ -403,7 +429,7 @@ public class SyncTaskServiceImpl implements SyncTaskService {
                     totalSyncCount += syncCount;
                     
                     // 计算同步进度
-                    double progress = calculateProgress(task, sourceTable, syncCount);
+                    double progress = calculateProgress(task, sourceTable, syncCount, extraStats);
                     
                     // 设置统计数据
                     tableStat.put("insertCount", insertCount);
@@ -413,6 +439,8 @@ public class SyncTaskServiceImpl implements SyncTaskService {
                     tableStat.put("exceptionCount", exceptionCount);
                     tableStat.put("progress", progress);
                     tableStat.put("lastUpdateTime", lastUpdateTime != null ? lastUpdateTime : new Date());
+                    extraStats.remove("lastSyncTime");
+                    tableStat.putAll(extraStats);
                     
                     tableStats.add(tableStat);
                 }
@@ -426,6 +454,12 @@ public class SyncTaskServiceImpl implements SyncTaskService {
             taskInfoMap.put("isRunning", isTaskRunning);
             taskInfoMap.put("syncType", task.getSyncType());
             taskInfoMap.put("taskStartTime", task.getTaskStartTime());
+            // 目标库连接池统计
+            taskInfoMap.put("poolStats", cdcSink != null ? cdcSink.getPoolStats() : Collections.emptyMap());
+            // 目标库写入限流累计等待时间
+            taskInfoMap.put("throttleMillis", cdcSink != null ? cdcSink.getThrottleMillis() : 0L);
+            // 共享binlog读取状态（未使用共享读取时为空）
+            taskInfoMap.put("sharedSource", SharedBinlogReader.getStatus(id));
             
             result.put("taskInfo", taskInfoMap);
             result.put("tableStats", tableStats);
@@ -441,10 +475,69 @@ public class SyncTaskServiceImpl implements SyncTaskService {
         }
     }
     
+    @Override
+    public SseEmitter tapEvents(Integer id, Set<String> tables, double sampleRate, int capacity, long timeoutSeconds) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        if (!FlinkCDCMain.isTaskRunning(id)) {
+            try {
+                emitter.send(SseEmitter.event().name("error").data("任务[" + id + "]未运行"));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+
+        EventTap.Subscription subscription = EventTap.subscribe(id, tables, sampleRate, capacity);
+        long[] reportedDropped = {0};
+        ScheduledFuture<?> future = TAP_SCHEDULER.scheduleWithFixedDelay(() -> {
+            try {
+                for (JSONObject event : subscription.drain()) {
+                    emitter.send(SseEmitter.event().name("event").data(event.toJSONString()));
+                }
+                long dropped = subscription.getDropped();
+                if (dropped > reportedDropped[0]) {
+                    emitter.send(SseEmitter.event().name("dropped").data(dropped));
+                    reportedDropped[0] = dropped;
+                }
+            } catch (Exception e) {
+                // 客户端断开
+                EventTap.unsubscribe(subscription);
+                emitter.completeWithError(e);
+            }
+        }, 0, TAP_PUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        Runnable detach = () -> {
+            future.cancel(false);
+            EventTap.unsubscribe(subscription);
+        };
+        emitter.onCompletion(detach);
+        emitter.onTimeout(detach);
+        emitter.onError(e -> detach.run());
+        return emitter;
+    }
+
     /**
      * 计算同步进度
      */
-    private double calculateProgress(SyncTask task, String sourceTable, int syncCount) {
+    private double calculateProgress(SyncTask task, String sourceTable, int syncCount, Map<String, Object> extraStats) {
+        // 启用增量快照的任务：按快照已读取行数和启动时的估算行数（information_schema.TABLE_ROWS）计算，
+        // 已完成分块数按分块行数估算
+        if (extraStats.get("snapshotEstimatedRows") instanceof Number) {
+            long estimatedRows = ((Number) extraStats.get("snapshotEstimatedRows")).longValue();
+            long snapshotRows = extraStats.get("snapshotReadRows") instanceof Number ? ((Number) extraStats.get("snapshotReadRows")).longValue() : 0;
+            long splitSize = extraStats.get("snapshotSplitSize") instanceof Number ? ((Number) extraStats.get("snapshotSplitSize")).longValue() : 0;
+            long chunks = extraStats.get("snapshotChunks") instanceof Number ? ((Number) extraStats.get("snapshotChunks")).longValue() : 0;
+            if (splitSize > 0) {
+                extraStats.put("snapshotChunksCompleted", Math.min(chunks, snapshotRows / splitSize));
+            }
+            if (estimatedRows > 0) {
+                return Math.min(100.0, (snapshotRows * 100.0) / estimatedRows);
+            }
+            // 估算行数为0时无法计算进度，没有读取到数据视为空表
+            return snapshotRows > 0 ? -1 : 100.0;
+        }
+
         // 增量同步任务通常无法准确计算进度，返回-1表示持续进行中
         if (task.getSyncType() == 1) {
             return -1;
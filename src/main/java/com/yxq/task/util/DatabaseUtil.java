@@ -2,6 +2,7 @@ package com.yxq.task.util;
 
 import com.yxq.task.entity.Database;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -19,6 +20,9 @@ import java.util.Map;
 @Component
 public class DatabaseUtil {
 
+    // 默认数据库时区
+    public static final String DEFAULT_SERVER_TIMEZONE = "Asia/Shanghai";
+
     private static DataSource dataSource;
 
     @Autowired
@@ -42,6 +46,16 @@ public class DatabaseUtil {
         }
     }
     
+    /**
+     * 获取数据库时区，未配置时为Asia/Shanghai
+     *
+     * @param database 数据库连接信息
+     * @return 时区ID
+     */
+    public static String getServerTimezone(Database database) {
+        return StringUtils.isNotBlank(database.getServerTimezone()) ? database.getServerTimezone().trim() : DEFAULT_SERVER_TIMEZONE;
+    }
+
     /**
      * 构建JDBC URL
      *
@@ -55,7 +69,7 @@ public class DatabaseUtil {
                 .append(database.getPort())
                 .append("/")
                 .append(database.getDbName())
-                .append("?useUnicode=true&characterEncoding=UTF-8&serverTimezone=Asia/Shanghai");
+                .append("?useUnicode=true&characterEncoding=UTF-8&serverTimezone=").append(getServerTimezone(database));
         
         // 添加额外参数
         if (database.getParam() != null && !database.getParam().isEmpty()) {
@@ -118,4 +132,30 @@ public class DatabaseUtil {
         
         return columns;
     }
+
+    /**
+     * 获取库中各表的估算行数（information_schema.TABLES.TABLE_ROWS，InnoDB为统计值，可能有较大误差）
+     *
+     * @param database 数据库连接信息
+     * @return 表名 -> 估算行数
+     */
+    public static Map<String, Long> getEstimatedTableRows(Database database) {
+        String url = buildJdbcUrl(database);
+        Map<String, Long> rows = new HashMap<>();
+
+        try (Connection connection = DriverManager.getConnection(url, database.getUsername(), AESUtil.decrypt(database.getPassword()));
+             PreparedStatement pst = connection.prepareStatement(
+                     "SELECT TABLE_NAME, TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = ?")) {
+            pst.setString(1, database.getDbName());
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    rows.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("获取表估算行数失败: {}", e.getMessage());
+        }
+
+        return rows;
+    }
 } 
\ No newline at end of file
@@ -1,14 +1,18 @@
 package com.yxq.task.util;
 
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DateUtils {
 
@@ -18,13 +22,14 @@ public class DateUtils {
 
     public static final String yyyyMMddHHmmss = "yyyyMMddHHmmss";
 
-    public static final SimpleDateFormat dateFormat = new SimpleDateFormat(yyyyMMddHHmmss);
+    // 格式 -> DateTimeFormatter，DateTimeFormatter不可变，可在线程间共享
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
 
-    public static final SimpleDateFormat dateFormat2 = new SimpleDateFormat(yyyy_MM_dd_hh_mm_ss);
+    private static final DateTimeFormatter ISO_DATE_FORMATTER = getFormatter("yyyyMMdd");
 
-    public static final SimpleDateFormat dateFormat3 = new SimpleDateFormat(yyyy_MM_dd);
+    private static final DateTimeFormatter ISO_DATETIME_FORMATTER = getFormatter(yyyyMMddHHmmss);
 
-    private static SimpleDateFormat dateFormat4;
+    private static final DateTimeFormatter PRINT_DATETIME_FORMATTER = getFormatter("yyyy-MM-dd'T'HH:mm:ss");
 
     /**
      * 获取当前时间并加上2分25s，因为服务器时间比北京时间少2分25s
@@ -40,27 +45,23 @@ public class DateUtils {
 
     /**
      * 按照指定格式返回 SimpleDateFormat 对象
+     * SimpleDateFormat 不是线程安全的，每次调用都返回新对象，调用方不要在线程间共享
      *
      * @param format 指定返回 SimpleDateFormat 对象的格式
      * @return 指定格式的 SimpleDateFormat 对象
      */
     public static SimpleDateFormat getDateFormat(String format) {
+        return new SimpleDateFormat(format);
+    }
 
-        // 如果参数指定的格式属于默认格式的一种，直接返回对应的 SimpleDateFormat 对象
-        if (yyyyMMddHHmmss.equals(format)) {
-            return dateFormat;
-        } else if (yyyy_MM_dd_hh_mm_ss.equals(format)) {
-            return dateFormat2;
-        } else if (yyyy_MM_dd.equals(format)) {
-            return dateFormat3;
-        } else {
-
-            // 不属于默认格式，此时先判断是否与现有对象格式相同，不相同才创建新对象
-            if (dateFormat4 == null || !format.equals(dateFormat4.toPattern())) {
-                dateFormat4 = new SimpleDateFormat(format);
-            }
-            return dateFormat4;
-        }
+    /**
+     * 按照指定格式返回缓存的 DateTimeFormatter 对象（不可变，线程安全）
+     *
+     * @param format 格式
+     * @return 指定格式的 DateTimeFormatter 对象
+     */
+    public static DateTimeFormatter getFormatter(String format) {
+        return FORMATTERS.computeIfAbsent(format, DateTimeFormatter::ofPattern);
     }
 
     /**
@@ -79,15 +80,19 @@ public class DateUtils {
 
     public static Date string2date(String time, String format)
             throws ParseException {
-        Date date = null;
-        SimpleDateFormat formatter = getDateFormat(format);
-        date = formatter.parse(time);
-        return date;
+        TemporalAccessor parsed;
+        try {
+            parsed = getFormatter(format).parseBest(time, LocalDateTime::from, LocalDate::from);
+        } catch (DateTimeException e) {
+            // 只含部分字段的格式（如yyyyMM）无法解析为日期，按原方式解析
+            return getDateFormat(format).parse(time);
+        }
+        LocalDateTime dateTime = parsed instanceof LocalDateTime ? (LocalDateTime) parsed : ((LocalDate) parsed).atStartOfDay();
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
     }
 
     public static String date2String(Date date, String format) {
-        SimpleDateFormat formatter = getDateFormat(format);
-        return formatter.format(date);
+        return date2String(date, getFormatter(format));
     }
 
     public static long string2long(String time, String format)
@@ -444,8 +449,7 @@ public class DateUtils {
         if (date == null) {
             result = "";
         } else {
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
-            result = formatter.format(date);
+            result = date2String(date, ISO_DATE_FORMATTER);
         }
         return result;
     }
@@ -455,37 +459,37 @@ public class DateUtils {
         if (date == null) {
             result = "";
         } else {
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-            result = formatter.format(date);
+            result = date2String(date, ISO_DATETIME_FORMATTER);
         }
         return result;
     }
 
     public static Date parseISODateFormat(String dateString) throws ParseException {
         Date result;
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
         if (dateString == null || dateString.trim().isEmpty()) {
             result = null;
         } else {
-            result = formatter.parse(dateString);
+            result = string2date(dateString, "yyyyMMdd");
         }
         return result;
     }
 
     public static Date parseISODatetimeFormat(String dateString) throws ParseException {
         Date result;
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
         if (dateString == null || dateString.trim().isEmpty()) {
             result = null;
         } else {
-            result = formatter.parse(dateString);
+            result = string2date(dateString, yyyyMMddHHmmss);
         }
         return result;
     }
 
     public static String printDateTime(Date dt) {
-        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        return df.format(dt);
+        return date2String(dt, PRINT_DATETIME_FORMATTER);
+    }
+
+    private static String date2String(Date date, DateTimeFormatter formatter) {
+        return formatter.format(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
     }
 
     public static void main(String[] args) throws ParseException {
@@ -496,7 +500,7 @@ public class DateUtils {
         ZoneId zoneId = ZoneId.of("UTC"); // 替换为您的时区ID
         LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, zoneId);
         // 定义日期时间格式
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        DateTimeFormatter formatter = getFormatter(yyyy_MM_dd_hh_mm_ss);
         // 格式化日期时间为字符串
         String timeString = localDateTime.format(formatter);
 
@@ -1,16 +1,19 @@
 package com.yxq.task.util;
 
+import com.alibaba.druid.pool.DruidDataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.time.temporal.Temporal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -39,6 +42,17 @@ public class DbUtil {
      * @return 影响行数
      */
     public static int insertOrUpdate(String sql) {
+        return insertOrUpdate(sql, null);
+    }
+
+    /**
+     * 执行参数化的插入或更新SQL语句
+     *
+     * @param sql SQL语句（使用?占位符）
+     * @param params 参数列表
+     * @return 影响行数
+     */
+    public static int insertOrUpdate(String sql, List<Object> params) {
         if (dataSource == null) {
             log.error("数据源未初始化，无法执行SQL");
             return 0;
@@ -57,6 +71,7 @@ public class DbUtil {
             }
             
             stmt = connection.prepareStatement(sql);
+            bindParams(stmt, params);
             int result = stmt.executeUpdate();
             
             log.debug("SQL执行完成，影响行数: {}", result);
@@ -89,6 +104,20 @@ public class DbUtil {
      * @return 影响行数
      */
     public static int insertOrUpdateWithTargetDb(String sql, String targetDbUrl, String username, String password) {
+        return insertOrUpdateWithTargetDb(sql, null, targetDbUrl, username, password);
+    }
+
+    /**
+     * 执行参数化的插入或更新SQL语句（指定目标数据库）
+     *
+     * @param sql SQL语句（使用?占位符）
+     * @param params 参数列表
+     * @param targetDbUrl 目标数据库URL
+     * @param username 用户名
+     * @param password 密码
+     * @return 影响行数
+     */
+    public static int insertOrUpdateWithTargetDb(String sql, List<Object> params, String targetDbUrl, String username, String password) {
         Connection connection = null;
         PreparedStatement stmt = null;
         
@@ -103,6 +132,7 @@ public class DbUtil {
             }
             
             stmt = connection.prepareStatement(sql);
+            bindParams(stmt, params);
             int result = stmt.executeUpdate();
             
             log.debug("SQL执行完成，影响行数: {}", result);
@@ -135,6 +165,120 @@ public class DbUtil {
         }
     }
 
+    /**
+     * 创建有界连接池（用于目标数据库的长连接写入）
+     *
+     * @param name 连接池名称
+     * @param url 数据库URL
+     * @param username 用户名
+     * @param password 密码
+     * @param maxActive 最大连接数
+     * @return 已初始化的连接池
+     * @throws SQLException SQL异常
+     */
+    public static DruidDataSource createPooledDataSource(String name, String url, String username, String password, int maxActive) throws SQLException {
+        DruidDataSource pool = new DruidDataSource();
+        pool.setName(name);
+        pool.setUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setInitialSize(1);
+        pool.setMinIdle(1);
+        pool.setMaxActive(Math.max(1, maxActive));
+        // 获取连接等待超时时间
+        pool.setMaxWait(60000);
+        // 空闲检测与保活，和管理库数据源保持一致
+        pool.setValidationQuery("SELECT 1");
+        pool.setTestWhileIdle(true);
+        pool.setTestOnBorrow(false);
+        pool.setTestOnReturn(false);
+        pool.setKeepAlive(true);
+        pool.setTimeBetweenEvictionRunsMillis(60000);
+        pool.setMinEvictableIdleTimeMillis(300000);
+        pool.init();
+        log.info("连接池[{}]初始化完成, 最大连接数: {}", name, pool.getMaxActive());
+        return pool;
+    }
+
+    /**
+     * 关闭连接池
+     *
+     * @param pool 连接池
+     */
+    public static void closeDataSource(DruidDataSource pool) {
+        if (pool == null || pool.isClosed()) {
+            return;
+        }
+        try {
+            pool.close();
+            log.info("连接池[{}]已关闭", pool.getName());
+        } catch (Exception e) {
+            log.error("关闭连接池[{}]失败", pool.getName(), e);
+        }
+    }
+
+    /**
+     * 绑定SQL参数
+     *
+     * @param stmt PreparedStatement
+     * @param params 参数列表，为null时不绑定
+     * @throws SQLException SQL异常
+     */
+    public static void bindParams(PreparedStatement stmt, List<Object> params) throws SQLException {
+        bindParams(stmt, params, 0);
+    }
+
+    /**
+     * 从指定偏移位置开始绑定SQL参数（用于多行合并语句）
+     *
+     * @param stmt PreparedStatement
+     * @param params 参数列表，为null时不绑定
+     * @param offset 已绑定的参数个数
+     * @throws SQLException SQL异常
+     */
+    public static void bindParams(PreparedStatement stmt, List<Object> params, int offset) throws SQLException {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            Object value = params.get(i);
+            int index = offset + i + 1;
+            if (value instanceof byte[]) {
+                stmt.setBytes(index, (byte[]) value);
+            } else if (value instanceof BigDecimal) {
+                stmt.setBigDecimal(index, (BigDecimal) value);
+            } else if (value == null || value instanceof String || value instanceof Number
+                    || value instanceof Boolean || value instanceof java.util.Date) {
+                stmt.setObject(index, value);
+            } else if (value instanceof Temporal) {
+                // LocalDate/LocalDateTime由驱动按原值写入，不做时区换算
+                stmt.setObject(index, value);
+            } else {
+                // 其他类型（如嵌套JSON结构）按字符串写入
+                stmt.setString(index, value.toString());
+            }
+        }
+    }
+
+    /**
+     * 为JDBC URL追加缺省参数，URL中已存在的参数保持不变
+     *
+     * @param url JDBC URL
+     * @param defaults 缺省参数
+     * @return 追加参数后的URL
+     */
+    public static String withUrlParams(String url, Map<String, String> defaults) {
+        StringBuilder result = new StringBuilder(url);
+        for (Map.Entry<String, String> entry : defaults.entrySet()) {
+            if (url.contains(entry.getKey() + "=")) {
+                continue;
+            }
+            result.append(result.indexOf("?") >= 0 ? "&" : "?")
+                    .append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        return result.toString();
+    }
+
     /**
      * 关闭数据库连接和资源
      *
@@ -162,6 +306,18 @@ public class DbUtil {
      * @return 影响行数
      */
     public static int insertOrUpdate(Connection connection, String sql) {
+        return insertOrUpdate(connection, sql, null);
+    }
+
+    /**
+     * 执行参数化的插入或更新SQL语句（使用外部连接）
+     *
+     * @param connection 数据库连接
+     * @param sql SQL语句（使用?占位符）
+     * @param params 参数列表
+     * @return 影响行数
+     */
+    public static int insertOrUpdate(Connection connection, String sql, List<Object> params) {
         if (connection == null) {
             log.error("数据库连接为null，无法执行SQL");
             return 0;
@@ -173,6 +329,7 @@ public class DbUtil {
             log.debug("准备使用外部连接执行SQL: {}", sql);
             
             stmt = connection.prepareStatement(sql);
+            bindParams(stmt, params);
             int result = stmt.executeUpdate();
             
             log.debug("SQL执行完成，影响行数: {}", result);